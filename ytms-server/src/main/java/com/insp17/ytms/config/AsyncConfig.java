@@ -1,11 +1,13 @@
 package com.insp17.ytms.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -22,13 +24,80 @@ public class AsyncConfig {
         return executor;
     }
 
-    @Bean(name = "gcpDeleteTaskExecutor")
-    public Executor deleteGcpVideos() {
+    // Writes to the media disk cache are best effort, so a full queue just drops the write.
+    @Bean(name = "mediaCacheWriteExecutor")
+    public Executor mediaCacheWriteExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(0);
-        executor.setMaxPoolSize(4);
-        executor.setQueueCapacity(50);
-        executor.setThreadNamePrefix("GCPDeleteVideoExecutor-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(64);
+        executor.setThreadNamePrefix("MediaCacheWriteExecutor-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Refresh-ahead for signed URLs; rejected refreshes are skipped by the cache and retried on a later hit.
+    @Bean(name = "signedUrlRefreshExecutor")
+    public Executor signedUrlRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("SignedUrlRefreshExecutor-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Metadata lookups and signing for the task media-urls endpoint; callers block on the results.
+    @Bean(name = "mediaUrlTaskExecutor")
+    public Executor mediaUrlTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("MediaUrlExecutor-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    // Post-upload work on stored media (faststart, probing, peaks, FLAC). Every upload fans out to several
+    // listeners, so the queue is unbounded: a rejection would surface in the uploading request after its row
+    // was saved and the job would be lost.
+    @Bean(name = "mediaProcessingExecutor")
+    public Executor mediaProcessingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("MediaProcessingExecutor-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Converting a revision to CDC chunks reads the whole file, so it gets its own thread instead of
+    // holding up the short jobs behind it.
+    @Bean(name = "revisionChunkingExecutor")
+    public Executor revisionChunkingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("RevisionChunkingExecutor-");
+        executor.initialize();
+        return executor;
+    }
+
+    // One ffmpeg process per thread (proxies, scrub previews), so the pool size caps concurrent transcodes.
+    // Unbounded for the same reason as mediaProcessingExecutor.
+    @Bean(name = "proxyTranscodeExecutor")
+    public Executor proxyTranscodeExecutor(@Value("${media.proxy.max-concurrent:1}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("ProxyTranscodeExecutor-");
         executor.initialize();
         return executor;
     }
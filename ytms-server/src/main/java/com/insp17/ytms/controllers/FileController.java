@@ -3,27 +3,36 @@ package com.insp17.ytms.controllers;
 import com.insp17.ytms.dtos.CurrentUser;
 import com.insp17.ytms.dtos.UserPrincipal;
 import com.insp17.ytms.entity.AudioInstruction;
+import com.insp17.ytms.entity.AudioPeaks;
+import com.insp17.ytms.entity.MediaObjectInfo;
+import com.insp17.ytms.entity.ProxyRendition;
 import com.insp17.ytms.entity.Revision;
 import com.insp17.ytms.entity.VideoTask;
 import com.insp17.ytms.repository.AudioInstructionRepository;
 import com.insp17.ytms.service.FileStorageService;
 import com.insp17.ytms.service.RevisionService;
+import com.insp17.ytms.service.StorageGarbageCollector;
 import com.insp17.ytms.service.VideoTaskService;
+import com.insp17.ytms.service.media.AudioPeaksService;
+import com.insp17.ytms.service.media.MediaProbeService;
+import com.insp17.ytms.service.media.audio.WaveformPeaks;
+import com.insp17.ytms.service.streaming.MediaStreamingService;
+import com.insp17.ytms.service.upload.StreamingUploadService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
@@ -33,6 +42,12 @@ public class FileController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private MediaStreamingService mediaStreamingService;
+
+    @Autowired
+    private StreamingUploadService streamingUploadService;
+
     @Autowired
     private VideoTaskService videoTaskService;
 
@@ -42,8 +57,19 @@ public class FileController {
     @Autowired
     private AudioInstructionRepository audioInstructionRepository;
 
-    @GetMapping("/video/{taskId}")
+    @Autowired
+    private StorageGarbageCollector storageGarbageCollector;
+
+    @Autowired
+    private MediaProbeService mediaProbeService;
+
+    @Autowired
+    private AudioPeaksService audioPeaksService;
+
+    @RequestMapping(value = "/video/{taskId}", method = {RequestMethod.GET, RequestMethod.HEAD})
     public ResponseEntity<Resource> streamRawVideo(@PathVariable Long taskId,
+                                                   @RequestParam(value = "t", required = false) Double t,
+                                                   @RequestParam(value = "quality", defaultValue = "proxy") String quality,
                                                    @CurrentUser UserPrincipal userPrincipal,
                                                    HttpServletRequest request) {
         try {
@@ -60,19 +86,23 @@ public class FileController {
                 return ResponseEntity.notFound().build();
             }
 
-            System.out.println("Downloading file from: " + task.getRawVideoUrl());
-            byte[] fileContent = fileStorageService.downloadFile(task.getRawVideoUrl());
+            ProxyRendition proxy = task.getRawVideoProxy();
+            if (!"original".equals(quality) && proxy != null && proxy.isFor(task.getRawVideoUrl())) {
+                return streamProxy(request, proxy, task.getRawVideoFilename(), t, String.valueOf(userPrincipal.getId()));
+            }
+
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(task.getRawVideoUrl(), task.getRawVideoInfo());
 
-            if (fileContent == null || fileContent.length == 0) {
+            if (object.getSize() == 0) {
                 System.out.println("File content is empty for task " + taskId);
                 return ResponseEntity.notFound().build();
             }
 
             String filename = task.getRawVideoFilename() != null ? task.getRawVideoFilename() : "video.mp4";
-            String contentType = getContentType(filename);
+            String contentType = recordedContentType(task.getRawVideoInfo(), task.getRawVideoUrl(), getContentType(filename));
 
             // Handle range requests for video streaming
-            return handleRangeRequest(request, fileContent, filename, contentType);
+            return streamVideo(request, object, task.getRawVideoUrl(), t, filename, contentType, String.valueOf(userPrincipal.getId()));
 
         } catch (IOException e) {
             System.err.println("Error streaming video for task " + taskId + ": " + e.getMessage());
@@ -85,8 +115,10 @@ public class FileController {
         }
     }
 
-    @GetMapping("/revision/{revisionId}")
+    @RequestMapping(value = "/revision/{revisionId}", method = {RequestMethod.GET, RequestMethod.HEAD})
     public ResponseEntity<Resource> streamRevisionVideo(@PathVariable Long revisionId,
+                                                        @RequestParam(value = "t", required = false) Double t,
+                                                        @RequestParam(value = "quality", defaultValue = "proxy") String quality,
                                                         @CurrentUser UserPrincipal userPrincipal,
                                                         HttpServletRequest request) {
         try {
@@ -103,19 +135,23 @@ public class FileController {
                 return ResponseEntity.notFound().build();
             }
 
-            System.out.println("Downloading revision file from: " + revision.getEditedVideoUrl());
-            byte[] fileContent = fileStorageService.downloadFile(revision.getEditedVideoUrl());
+            ProxyRendition proxy = revision.getProxy();
+            if (!"original".equals(quality) && proxy != null && proxy.isFor(revision.getEditedVideoUrl())) {
+                return streamProxy(request, proxy, revision.getEditedVideoFilename(), t, String.valueOf(userPrincipal.getId()));
+            }
+
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(revision.getEditedVideoUrl(), revision.getMediaInfo());
 
-            if (fileContent == null || fileContent.length == 0) {
+            if (object.getSize() == 0) {
                 System.out.println("File content is empty for revision " + revisionId);
                 return ResponseEntity.notFound().build();
             }
 
             String filename = revision.getEditedVideoFilename() != null ? revision.getEditedVideoFilename() : "revision.mp4";
-            String contentType = getContentType(filename);
+            String contentType = recordedContentType(revision.getMediaInfo(), revision.getEditedVideoUrl(), getContentType(filename));
 
             // Handle range requests for video streaming
-            return handleRangeRequest(request, fileContent, filename, contentType);
+            return streamVideo(request, object, revision.getEditedVideoUrl(), t, filename, contentType, String.valueOf(userPrincipal.getId()));
 
         } catch (IOException e) {
             System.err.println("Error streaming revision " + revisionId + ": " + e.getMessage());
@@ -128,8 +164,10 @@ public class FileController {
         }
     }
 
-    @GetMapping("/audio/{audioId}")
-    public ResponseEntity<Resource> streamAudio(@PathVariable Long audioId, @CurrentUser UserPrincipal userPrincipal) {
+    @RequestMapping(value = "/audio/{audioId}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public ResponseEntity<Resource> streamAudio(@PathVariable Long audioId,
+                                                @CurrentUser UserPrincipal userPrincipal,
+                                                HttpServletRequest request) {
         try {
             System.out.println("Streaming audio: " + audioId + " by user: " + userPrincipal.getUsername());
 
@@ -146,28 +184,18 @@ public class FileController {
                 return ResponseEntity.notFound().build();
             }
 
-            System.out.println("Downloading audio file from: " + audio.getAudioUrl());
-            byte[] fileContent = fileStorageService.downloadFile(audio.getAudioUrl());
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(audio.getAudioUrl(), audio.getMediaInfo());
 
-            if (fileContent == null || fileContent.length == 0) {
+            if (object.getSize() == 0) {
                 System.out.println("File content is empty for audio " + audioId);
                 return ResponseEntity.notFound().build();
             }
 
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
-
             String filename = audio.getAudioFilename() != null ? audio.getAudioFilename() : "audio.mp3";
-            String contentType = getAudioContentType(filename);
-
-            System.out.println("Streaming audio: " + filename + " (" + fileContent.length + " bytes)");
+            String contentType = recordedContentType(audio.getMediaInfo(), audio.getAudioUrl(), getAudioContentType(filename));
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .contentLength(fileContent.length)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
-                    .body(resource);
+            // Same ranged path as video, so seeking in a long voice note only fetches what's played
+            return mediaStreamingService.buildResponse(request, object, filename, contentType, String.valueOf(userPrincipal.getId()));
 
         } catch (IOException e) {
             System.err.println("Error streaming audio " + audioId + ": " + e.getMessage());
@@ -180,65 +208,99 @@ public class FileController {
         }
     }
 
-    // Handle range requests for proper video streaming with audio
-    private ResponseEntity<Resource> handleRangeRequest(HttpServletRequest request,
-                                                        byte[] fileContent,
-                                                        String filename,
-                                                        String contentType) {
-        long fileLength = fileContent.length;
-        long start = 0;
-        long end = fileLength - 1;
-
-        String rangeHeader = request.getHeader("Range");
-
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            Pattern pattern = Pattern.compile("bytes=(\\d+)-(\\d*)");
-            Matcher matcher = pattern.matcher(rangeHeader);
-
-            if (matcher.matches()) {
-                start = Long.parseLong(matcher.group(1));
-                if (!matcher.group(2).isEmpty()) {
-                    end = Long.parseLong(matcher.group(2));
-                }
-            }
+    // Peaks depend only on the file's samples, and an instruction's audio is never replaced with different
+    // content, so clients may cache them for as long as they like
+    @GetMapping("/audio/{audioId}/peaks")
+    public ResponseEntity<Map<String, Object>> getAudioPeaks(@PathVariable Long audioId,
+                                                             @RequestParam(value = "samplesPerPeak", required = false) Integer samplesPerPeak,
+                                                             @RequestParam(value = "maxPeaks", defaultValue = "4000") int maxPeaks,
+                                                             @CurrentUser UserPrincipal userPrincipal) {
+        AudioInstruction audio = audioInstructionRepository.findById(audioId).orElse(null);
+        if (audio == null || audio.getAudioUrl() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!videoTaskService.canUserAccessTask(audio.getVideoTask().getId(), userPrincipal.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        // Ensure valid range
-        if (start > end || start < 0 || end >= fileLength) {
-            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
-                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
-                    .build();
+        Optional<AudioPeaks> peaks = audioPeaksService.findPeaks(audio.getAudioUrl());
+        if (peaks.isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
 
-        long contentLength = end - start + 1;
-        byte[] rangeContent = new byte[(int) contentLength];
-        System.arraycopy(fileContent, (int) start, rangeContent, 0, (int) contentLength);
+        WaveformPeaks.Level level = AudioPeaksService.selectLevel(peaks.get(), samplesPerPeak, maxPeaks);
+        int[] data = new int[level.data().length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = level.data()[i];
+        }
 
-        ByteArrayResource resource = new ByteArrayResource(rangeContent);
+        Map<String, Object> response = new HashMap<>();
+        response.put("sampleRate", peaks.get().getSampleRate());
+        response.put("durationMs", peaks.get().getDurationMs());
+        response.put("samplesPerPeak", level.samplesPerPeak());
+        response.put("length", level.length());
+        response.put("bits", 8);
+        response.put("levels", WaveformPeaks.decode(peaks.get().getData()).stream().map(WaveformPeaks.Level::samplesPerPeak).toList());
+        response.put("data", data);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable())
+                .eTag("\"peaks-" + peaks.get().getId() + "-" + level.samplesPerPeak() + "\"")
+                .body(response);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_TYPE, contentType);
-        headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
-        headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
-        headers.add(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
-        headers.add(HttpHeaders.CACHE_CONTROL, "no-cache");
+    // Streams a multipart upload straight to storage. Everything comes from the path: reading a request
+    // parameter would make Tomcat parse and spool the whole multipart body to disk first.
+    @PostMapping("/ingest/{kind}/{folder}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EDITOR')")
+    public ResponseEntity<?> ingestUpload(@PathVariable String kind,
+                                          @PathVariable String folder,
+                                          @CurrentUser UserPrincipal userPrincipal,
+                                          HttpServletRequest request) {
+        StreamingUploadService.MediaKind mediaKind;
+        if ("video".equals(kind)) {
+            mediaKind = StreamingUploadService.MediaKind.VIDEO;
+        } else if ("audio".equals(kind)) {
+            mediaKind = StreamingUploadService.MediaKind.AUDIO;
+        } else {
+            return ResponseEntity.badRequest().body("Unsupported upload kind: " + kind);
+        }
+        if (!folder.matches("[A-Za-z0-9_-]+")) {
+            return ResponseEntity.badRequest().body("Invalid folder: " + folder);
+        }
 
-        // Important: Add CORS headers for video streaming
-        headers.add("Access-Control-Allow-Origin", "http://localhost:3000");
-        headers.add("Access-Control-Allow-Credentials", "true");
-        headers.add("Access-Control-Allow-Headers", "Range, Content-Range, Content-Length");
+        try {
+            System.out.println("Streaming " + kind + " upload into " + folder + " by user: " + userPrincipal.getUsername());
+            FileStorageService.FileUploadResult result = streamingUploadService.ingest(request, mediaKind, folder);
 
-        System.out.println("Streaming " + filename + " range: " + start + "-" + end + "/" + fileLength + " (" + contentLength + " bytes)");
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", result.getUrl());
+            response.put("originalFilename", result.getOriginalFilename());
+            response.put("size", result.getSize());
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            System.err.println("Error ingesting " + kind + " upload: " + e.getMessage());
+            return ResponseEntity.badRequest().body("Upload failed: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Unexpected error ingesting " + kind + " upload: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Upload failed: " + e.getMessage());
+        }
+    }
 
-        if (rangeHeader != null) {
-            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .headers(headers)
-                    .body(resource);
-        } else {
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(resource);
+    // Orphaned-object sweep on demand; defaults to a dry run that only reports what would be deleted
+    @PostMapping("/storage-gc")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> runStorageGc(@RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun,
+                                          @CurrentUser UserPrincipal userPrincipal) {
+        try {
+            System.out.println("Storage GC (dryRun=" + dryRun + ") requested by user: " + userPrincipal.getUsername());
+            return ResponseEntity.ok(storageGarbageCollector.collect(dryRun));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Storage GC failed: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
@@ -294,6 +356,37 @@ public class FileController {
         }
     }
 
+    // Review playback defaults to the low-bitrate proxy; ?quality=original streams the master
+    private ResponseEntity<Resource> streamProxy(HttpServletRequest request, ProxyRendition proxy, String originalFilename,
+                                                 Double t, String clientKey) throws IOException {
+        FileStorageService.StoredObject object = fileStorageService.getObjectInfo(proxy.getUrl());
+        String baseName = originalFilename != null && originalFilename.lastIndexOf('.') > 0
+                ? originalFilename.substring(0, originalFilename.lastIndexOf('.'))
+                : "video";
+        return streamVideo(request, object, proxy.getUrl(), t, baseName + "_proxy.mp4", "video/mp4", clientKey);
+    }
+
+    // ?t=seconds reports the keyframe before that time, looked up in the index recorded after upload
+    private ResponseEntity<Resource> streamVideo(HttpServletRequest request, FileStorageService.StoredObject object, String url,
+                                                 Double t, String filename, String contentType, String clientKey) {
+        if (t != null && t >= 0) {
+            Optional<MediaProbeService.SeekPoint> seekPoint = mediaProbeService.findSeekPoint(url, t);
+            if (seekPoint.isPresent()) {
+                return mediaStreamingService.buildSeekResponse(request, object, seekPoint.get().offset(), seekPoint.get().timeMs(),
+                        filename, contentType, clientKey);
+            }
+        }
+        return mediaStreamingService.buildResponse(request, object, filename, contentType, clientKey);
+    }
+
+    // The type sniffed after upload beats a guess from the extension
+    private String recordedContentType(MediaObjectInfo info, String url, String fallback) {
+        if (info != null && info.describes(url) && info.getContentType() != null) {
+            return info.getContentType();
+        }
+        return fallback;
+    }
+
     private String getContentType(String filename) {
         if (filename == null) return "video/mp4";
 
@@ -331,6 +424,8 @@ public class FileController {
                 return "audio/aac";
             case "ogg":
                 return "audio/ogg";
+            case "flac":
+                return "audio/flac";
             default:
                 return "audio/mpeg";
         }
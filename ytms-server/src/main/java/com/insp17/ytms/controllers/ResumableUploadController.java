@@ -0,0 +1,145 @@
+package com.insp17.ytms.controllers;
+
+import com.insp17.ytms.dtos.CreateResumableUploadRequest;
+import com.insp17.ytms.dtos.CurrentUser;
+import com.insp17.ytms.dtos.UserPrincipal;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.upload.ResumableUploadService;
+import com.insp17.ytms.service.upload.StreamingUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * tus-style resumable uploads for on-prem (INTERNAL storage) deployments. GCP deployments upload
+ * directly to the bucket through signed URLs instead.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin(origins = "http://localhost:3000", allowCredentials = "true")
+@PreAuthorize("hasRole('ADMIN') or hasRole('EDITOR')")
+public class ResumableUploadController {
+
+    private static final String TUS_RESUMABLE = "Tus-Resumable";
+    private static final String TUS_VERSION = "1.0.0";
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_CHECKSUM = "Upload-Checksum";
+    // tus checksum extension status for a failed chunk checksum
+    private static final int CHECKSUM_MISMATCH = 460;
+
+    @Autowired
+    private ResumableUploadService resumableUploadService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @PostMapping
+    public ResponseEntity<?> createUpload(@RequestBody CreateResumableUploadRequest request, @CurrentUser UserPrincipal userPrincipal) {
+        if (!fileStorageService.isInternalStorage()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Resumable server uploads are only available for INTERNAL storage; use signed upload URLs");
+        }
+
+        StreamingUploadService.MediaKind kind = "audio".equals(request.getKind())
+                ? StreamingUploadService.MediaKind.AUDIO
+                : StreamingUploadService.MediaKind.VIDEO;
+        try {
+            ResumableUploadService.UploadSession session = resumableUploadService.create(userPrincipal.getId(), kind,
+                    request.getFilename(), request.getContentType(), request.getFolder(), request.getLength(), request.getSha256());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", session.getId());
+            response.put("chunkSize", session.getChunkSize());
+            response.put("chunkCount", session.getChunkCount());
+
+            return ResponseEntity.created(URI.create("/api/uploads/" + session.getId()))
+                    .header(TUS_RESUMABLE, TUS_VERSION)
+                    .body(response);
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getOffset(@PathVariable String uploadId, @CurrentUser UserPrincipal userPrincipal) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(uploadId, userPrincipal.getId());
+        return ResponseEntity.ok()
+                .header(TUS_RESUMABLE, TUS_VERSION)
+                .header(UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(session.getLength()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .build();
+    }
+
+    // Beyond tus: lists every missing chunk so parallel clients can resume out of order
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String uploadId, @CurrentUser UserPrincipal userPrincipal) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(uploadId, userPrincipal.getId());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("length", session.getLength());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("offset", session.getOffset());
+        response.put("missingChunks", session.getMissingChunks());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(response);
+    }
+
+    @PatchMapping("/{uploadId}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String uploadId,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         @RequestHeader(value = UPLOAD_CHECKSUM, required = false) String checksum,
+                                         @CurrentUser UserPrincipal userPrincipal,
+                                         HttpServletRequest request) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(uploadId, userPrincipal.getId());
+        try {
+            long newOffset = resumableUploadService.writeChunk(session, offset, request.getInputStream(),
+                    request.getContentLengthLong(), checksum);
+            return ResponseEntity.noContent()
+                    .header(TUS_RESUMABLE, TUS_VERSION)
+                    .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                    .build();
+        } catch (ResumableUploadService.ChecksumMismatchException e) {
+            return ResponseEntity.status(CHECKSUM_MISMATCH).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(@PathVariable String uploadId, @CurrentUser UserPrincipal userPrincipal) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(uploadId, userPrincipal.getId());
+        try {
+            FileStorageService.FileUploadResult result = resumableUploadService.complete(session);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", result.getUrl());
+            response.put("originalFilename", result.getOriginalFilename());
+            response.put("size", result.getSize());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (ResumableUploadService.ChecksumMismatchException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId, @CurrentUser UserPrincipal userPrincipal) throws IOException {
+        ResumableUploadService.UploadSession session = resumableUploadService.getSession(uploadId, userPrincipal.getId());
+        resumableUploadService.abort(session);
+        return ResponseEntity.noContent().header(TUS_RESUMABLE, TUS_VERSION).build();
+    }
+}
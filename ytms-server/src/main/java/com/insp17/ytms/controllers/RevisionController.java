@@ -102,7 +102,17 @@ public class RevisionController {
         }
 
         String objectName = revision.getEditedVideoUrl().replace("gs://" + fileStorageService.getGcpBucketName() + "/", "");
-        String signedUrl = fileStorageService.generateSignedUrlForDownload(objectName);
+        String signedUrl;
+        if (fileStorageService.isChunkedUrl(revision.getEditedVideoUrl())) {
+            try {
+                signedUrl = fileStorageService.getSignedUrlToDownload(revision.getEditedVideoUrl());
+            } catch (IOException e) {
+                System.err.println("Could not sign chunked revision " + id + ": " + e.getMessage());
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+        } else {
+            signedUrl = fileStorageService.generateSignedUrlForDownload(objectName);
+        }
 
         Map<String, String> response = new HashMap<>();
         response.put("url", signedUrl);
@@ -40,6 +40,9 @@ public class VideoTaskController {
     @Autowired
     private VideoMetadataService videoMetadataService;
 
+    @Autowired
+    private TaskMediaService taskMediaService;
+
 
     @GetMapping
     public ResponseEntity<List<VideoTaskDTO>> getAllTasks(@CurrentUser UserPrincipal userPrincipal) {
@@ -152,6 +155,57 @@ public class VideoTaskController {
         }
     }
 
+    @PostMapping("/generate-parallel-upload-urls")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EDITOR')")
+    public ResponseEntity<?> generateParallelUploadUrls(@RequestParam("filename") String filename, @RequestParam("type") String type,
+                                                        @RequestParam("folder") String folder, @RequestParam("parts") int parts,
+                                                        @CurrentUser UserPrincipal userPrincipal) {
+        try {
+            // A single plain segment, so the target can't land in cdc/, thumbnails/ or other reserved prefixes
+            if (!folder.matches("[A-Za-z0-9_-]+")) {
+                return ResponseEntity.badRequest().body("Invalid folder: " + folder);
+            }
+            String uniqueFilename = fileStorageService.generateUniqueFilename(filename);
+            String objectName = folder + "/" + uniqueFilename;
+
+            FileStorageService.ParallelUploadSession session = fileStorageService.createParallelUpload(objectName, type, parts, userPrincipal.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("uploadId", session.getUploadId());
+            response.put("objectName", session.getObjectName());
+            response.put("fileName", uniqueFilename);
+            response.put("partUrls", session.getPartUrls());
+
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not generate upload URLs: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/finalize-parallel-upload")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('EDITOR')")
+    public ResponseEntity<?> finalizeParallelUpload(@RequestBody FinalizeParallelUploadRequest request,
+                                                    @CurrentUser UserPrincipal userPrincipal) {
+        try {
+            FileStorageService.StoredObject object = fileStorageService.composeParallelUpload(
+                    request.getUploadId(), userPrincipal.getId(), request.getExpectedSize(), request.getExpectedCrc32c());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", object.getUrl());
+            response.put("size", object.getSize());
+
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body("Could not finalize upload: " + e.getMessage());
+        }
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<VideoTaskDTO> updateTask(@PathVariable Long id, @RequestBody TaskUpdateRequest taskUpdateRequest, @CurrentUser UserPrincipal userPrincipal) {
@@ -282,5 +336,13 @@ public class VideoTaskController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/{id}/media-urls")
+    public ResponseEntity<TaskMediaUrlsDTO> getTaskMediaUrls(@PathVariable Long id, @CurrentUser UserPrincipal userPrincipal) {
+        if (!videoTaskService.canUserAccessTask(id, userPrincipal.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(taskMediaService.getTaskMediaUrls(id));
+    }
+
 
 }
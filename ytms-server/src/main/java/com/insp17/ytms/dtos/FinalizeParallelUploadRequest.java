@@ -0,0 +1,33 @@
+package com.insp17.ytms.dtos;
+
+// Target object, part count and content type come from the session created with the upload URLs
+public class FinalizeParallelUploadRequest {
+    private String uploadId;
+    private long expectedSize;
+    // Base64 CRC32C of the whole file, as reported by GCS
+    private String expectedCrc32c;
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public long getExpectedSize() {
+        return expectedSize;
+    }
+
+    public void setExpectedSize(long expectedSize) {
+        this.expectedSize = expectedSize;
+    }
+
+    public String getExpectedCrc32c() {
+        return expectedCrc32c;
+    }
+
+    public void setExpectedCrc32c(String expectedCrc32c) {
+        this.expectedCrc32c = expectedCrc32c;
+    }
+}
@@ -0,0 +1,44 @@
+package com.insp17.ytms.dtos;
+
+public class MediaUrlDTO {
+    private Long id;
+    private String filename;
+    private String url;
+    private String streamUrl;
+    private Long size;
+    private String contentType;
+    private String originalStreamUrl;
+
+    public MediaUrlDTO() {}
+
+    public MediaUrlDTO(Long id, String filename, String url, String streamUrl, Long size, String contentType) {
+        this.id = id;
+        this.filename = filename;
+        this.url = url;
+        this.streamUrl = streamUrl;
+        this.size = size;
+        this.contentType = contentType;
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getStreamUrl() { return streamUrl; }
+    public void setStreamUrl(String streamUrl) { this.streamUrl = streamUrl; }
+
+    public Long getSize() { return size; }
+    public void setSize(Long size) { this.size = size; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public String getOriginalStreamUrl() { return originalStreamUrl; }
+    public void setOriginalStreamUrl(String originalStreamUrl) { this.originalStreamUrl = originalStreamUrl; }
+}
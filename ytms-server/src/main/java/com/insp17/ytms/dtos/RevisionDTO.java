@@ -1,6 +1,7 @@
 package com.insp17.ytms.dtos;
 
 import com.insp17.ytms.entity.Revision;
+import com.insp17.ytms.entity.VideoProbeInfo;
 
 import java.time.LocalDateTime;
 
@@ -13,6 +14,11 @@ public class RevisionDTO {
     private String notes;
     private UserDTO uploadedBy;
     private LocalDateTime createdAt;
+    private Long durationMs;
+    private Integer width;
+    private Integer height;
+    private String videoCodec;
+    private String scrubPreviewUrl;
 
     public RevisionDTO() {}
 
@@ -25,6 +31,17 @@ public class RevisionDTO {
         this.notes = revision.getNotes();
         this.uploadedBy = revision.getUploadedBy() != null ? new UserDTO(revision.getUploadedBy()) : null;
         this.createdAt = revision.getCreatedAt();
+
+        VideoProbeInfo probe = revision.getVideoProbe();
+        if (probe != null && probe.describes(revision.getEditedVideoUrl())) {
+            this.durationMs = probe.getDurationMs();
+            this.width = probe.getWidth();
+            this.height = probe.getHeight();
+            this.videoCodec = probe.getCodec();
+        }
+        if (revision.getScrubPreview() != null && revision.getScrubPreview().isFor(revision.getEditedVideoUrl())) {
+            this.scrubPreviewUrl = revision.getScrubPreview().getVttUrl();
+        }
     }
 
     // Getters and setters
@@ -51,5 +68,20 @@ public class RevisionDTO {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public Long getDurationMs() { return durationMs; }
+    public void setDurationMs(Long durationMs) { this.durationMs = durationMs; }
+
+    public Integer getWidth() { return width; }
+    public void setWidth(Integer width) { this.width = width; }
+
+    public Integer getHeight() { return height; }
+    public void setHeight(Integer height) { this.height = height; }
+
+    public String getVideoCodec() { return videoCodec; }
+    public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec; }
+
+    public String getScrubPreviewUrl() { return scrubPreviewUrl; }
+    public void setScrubPreviewUrl(String scrubPreviewUrl) { this.scrubPreviewUrl = scrubPreviewUrl; }
 }
 
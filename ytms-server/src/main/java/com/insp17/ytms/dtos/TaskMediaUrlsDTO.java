@@ -0,0 +1,38 @@
+package com.insp17.ytms.dtos;
+
+import java.util.List;
+
+public class TaskMediaUrlsDTO {
+    private Long taskId;
+    private MediaUrlDTO rawVideo;
+    private List<MediaUrlDTO> revisions;
+    private List<MediaUrlDTO> audioInstructions;
+    private long validForSeconds;
+
+    public TaskMediaUrlsDTO() {}
+
+    public TaskMediaUrlsDTO(Long taskId, MediaUrlDTO rawVideo, List<MediaUrlDTO> revisions,
+                            List<MediaUrlDTO> audioInstructions, long validForSeconds) {
+        this.taskId = taskId;
+        this.rawVideo = rawVideo;
+        this.revisions = revisions;
+        this.audioInstructions = audioInstructions;
+        this.validForSeconds = validForSeconds;
+    }
+
+    // Getters and setters
+    public Long getTaskId() { return taskId; }
+    public void setTaskId(Long taskId) { this.taskId = taskId; }
+
+    public MediaUrlDTO getRawVideo() { return rawVideo; }
+    public void setRawVideo(MediaUrlDTO rawVideo) { this.rawVideo = rawVideo; }
+
+    public List<MediaUrlDTO> getRevisions() { return revisions; }
+    public void setRevisions(List<MediaUrlDTO> revisions) { this.revisions = revisions; }
+
+    public List<MediaUrlDTO> getAudioInstructions() { return audioInstructions; }
+    public void setAudioInstructions(List<MediaUrlDTO> audioInstructions) { this.audioInstructions = audioInstructions; }
+
+    public long getValidForSeconds() { return validForSeconds; }
+    public void setValidForSeconds(long validForSeconds) { this.validForSeconds = validForSeconds; }
+}
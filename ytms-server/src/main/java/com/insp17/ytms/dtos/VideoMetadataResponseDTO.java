@@ -2,6 +2,7 @@ package com.insp17.ytms.dtos;
 
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.insp17.ytms.entity.ThumbnailVariants;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,6 +24,13 @@ public class VideoMetadataResponseDTO {
     @JsonProperty("thumbnail_url")
     private String thumbnailUrl;
 
+    // Downscaled copies, narrowest first; pick the smallest one that fits the layout
+    @JsonProperty("thumbnail_srcset")
+    private String thumbnailSrcset;
+
+    @JsonProperty("thumbnail_variants")
+    private List<ThumbnailVariants.Variant> thumbnailVariants;
+
     private String category;
     private String language;
 
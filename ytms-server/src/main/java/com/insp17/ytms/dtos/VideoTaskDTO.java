@@ -3,6 +3,7 @@ package com.insp17.ytms.dtos;
 import com.insp17.ytms.entity.PrivacyLevel;
 import com.insp17.ytms.entity.TaskPriority;
 import com.insp17.ytms.entity.TaskStatus;
+import com.insp17.ytms.entity.VideoProbeInfo;
 import com.insp17.ytms.entity.VideoTask;
 
 import java.time.LocalDateTime;
@@ -15,6 +16,10 @@ public class VideoTaskDTO {
     private String description;
     private String rawVideoUrl;
     private String rawVideoFilename;
+    private Long rawVideoDurationMs;
+    private Integer rawVideoWidth;
+    private Integer rawVideoHeight;
+    private String rawVideoCodec;
     private UserDTO assignedEditor;
     private UserDTO createdBy;
     private TaskStatus status;
@@ -38,6 +43,13 @@ public class VideoTaskDTO {
         this.description = task.getDescription();
         this.rawVideoUrl = task.getRawVideoUrl();
         this.rawVideoFilename = task.getRawVideoFilename();
+        VideoProbeInfo probe = task.getRawVideoProbe();
+        if (probe != null && probe.describes(task.getRawVideoUrl())) {
+            this.rawVideoDurationMs = probe.getDurationMs();
+            this.rawVideoWidth = probe.getWidth();
+            this.rawVideoHeight = probe.getHeight();
+            this.rawVideoCodec = probe.getCodec();
+        }
         this.assignedEditor = task.getAssignedEditor() != null ? new UserDTO(task.getAssignedEditor()) : null;
         this.createdBy = task.getCreatedBy() != null ? new UserDTO(task.getCreatedBy()) : null;
         this.status = task.getTaskStatus();
@@ -85,6 +97,18 @@ public class VideoTaskDTO {
     public String getRawVideoFilename() { return rawVideoFilename; }
     public void setRawVideoFilename(String rawVideoFilename) { this.rawVideoFilename = rawVideoFilename; }
 
+    public Long getRawVideoDurationMs() { return rawVideoDurationMs; }
+    public void setRawVideoDurationMs(Long rawVideoDurationMs) { this.rawVideoDurationMs = rawVideoDurationMs; }
+
+    public Integer getRawVideoWidth() { return rawVideoWidth; }
+    public void setRawVideoWidth(Integer rawVideoWidth) { this.rawVideoWidth = rawVideoWidth; }
+
+    public Integer getRawVideoHeight() { return rawVideoHeight; }
+    public void setRawVideoHeight(Integer rawVideoHeight) { this.rawVideoHeight = rawVideoHeight; }
+
+    public String getRawVideoCodec() { return rawVideoCodec; }
+    public void setRawVideoCodec(String rawVideoCodec) { this.rawVideoCodec = rawVideoCodec; }
+
     public UserDTO getAssignedEditor() { return assignedEditor; }
     public void setAssignedEditor(UserDTO assignedEditor) { this.assignedEditor = assignedEditor; }
 
@@ -33,6 +33,9 @@ public class AudioInstruction {
     @Column(name = "created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    @Embedded
+    private MediaObjectInfo mediaInfo;
+
     // Constructors, getters, setters
     public AudioInstruction() {
     }
@@ -102,4 +105,12 @@ public class AudioInstruction {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public MediaObjectInfo getMediaInfo() {
+        return mediaInfo;
+    }
+
+    public void setMediaInfo(MediaObjectInfo mediaInfo) {
+        this.mediaInfo = mediaInfo;
+    }
 }
@@ -0,0 +1,92 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Waveform peaks of one stored audio file, shared by every row pointing at that file
+@Entity
+@Table(name = "audio_peaks", indexes = {
+        @Index(name = "idx_audio_peaks_url", columnList = "url", unique = true)
+})
+public class AudioPeaks {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url", nullable = false)
+    private String url;
+
+    @Column(name = "sample_rate", nullable = false)
+    private int sampleRate;
+
+    @Column(name = "duration_ms", nullable = false)
+    private long durationMs;
+
+    // WaveformPeaks.encode() of every zoom level
+    @Column(name = "data", nullable = false, length = 16777216)
+    private byte[] data;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public AudioPeaks() {
+    }
+
+    public AudioPeaks(String url, int sampleRate, long durationMs, byte[] data) {
+        this.url = url;
+        this.sampleRate = sampleRate;
+        this.durationMs = durationMs;
+        this.data = data;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
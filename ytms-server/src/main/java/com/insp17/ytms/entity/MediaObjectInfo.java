@@ -0,0 +1,94 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Facts about a stored media file recorded once after upload, so streaming doesn't have to ask storage.
+ * Only valid for the URL it was recorded for; rows whose URL changed fall back to a storage lookup.
+ */
+@Embeddable
+public class MediaObjectInfo {
+
+    @Column(name = "media_info_url")
+    private String url;
+
+    @Column(name = "media_size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "media_content_type")
+    private String contentType;
+
+    @Column(name = "media_generation")
+    private Long generation;
+
+    @Column(name = "media_crc32c")
+    private String crc32c;
+
+    @Column(name = "media_last_modified")
+    private Long lastModified;
+
+    public MediaObjectInfo() {
+    }
+
+    public MediaObjectInfo(String url, Long sizeBytes, String contentType, Long generation, String crc32c, Long lastModified) {
+        this.url = url;
+        this.sizeBytes = sizeBytes;
+        this.contentType = contentType;
+        this.generation = generation;
+        this.crc32c = crc32c;
+        this.lastModified = lastModified;
+    }
+
+    public boolean describes(String storedUrl) {
+        return storedUrl != null && storedUrl.equals(url) && sizeBytes != null;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
+    public String getCrc32c() {
+        return crc32c;
+    }
+
+    public void setCrc32c(String crc32c) {
+        this.crc32c = crc32c;
+    }
+
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+}
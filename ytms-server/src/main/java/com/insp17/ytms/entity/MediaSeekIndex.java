@@ -0,0 +1,68 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Keyframe time -> byte offset pairs for one stored video, shared by every row pointing at that file
+@Entity
+@Table(name = "media_seek_indexes", indexes = {
+        @Index(name = "idx_media_seek_indexes_url", columnList = "url", unique = true)
+})
+public class MediaSeekIndex {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url", nullable = false)
+    private String url;
+
+    // "timeMs:offset" pairs in time order, comma separated
+    @Column(name = "entries", columnDefinition = "TEXT", nullable = false)
+    private String entries;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public MediaSeekIndex() {
+    }
+
+    public MediaSeekIndex(String url, String entries) {
+        this.url = url;
+        this.entries = entries;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getEntries() {
+        return entries;
+    }
+
+    public void setEntries(String entries) {
+        this.entries = entries;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,52 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Low-bitrate copy of a video used for review playback. Only valid while the row still points at the
+ * file it was transcoded from.
+ */
+@Embeddable
+public class ProxyRendition {
+
+    @Column(name = "proxy_url")
+    private String url;
+
+    @Column(name = "proxy_source_url")
+    private String sourceUrl;
+
+    @Column(name = "proxy_size_bytes")
+    private Long sizeBytes;
+
+    public ProxyRendition() {
+    }
+
+    public boolean isFor(String storedUrl) {
+        return url != null && storedUrl != null && storedUrl.equals(sourceUrl);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+}
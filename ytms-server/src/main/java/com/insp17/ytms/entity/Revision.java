@@ -35,6 +35,18 @@ public class Revision {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    @Embedded
+    private MediaObjectInfo mediaInfo;
+
+    @Embedded
+    private VideoProbeInfo videoProbe;
+
+    @Embedded
+    private ProxyRendition proxy;
+
+    @Embedded
+    private ScrubPreview scrubPreview;
+
     // Constructors, getters, setters
     public Revision() {}
 
@@ -72,4 +84,16 @@ public class Revision {
 
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public MediaObjectInfo getMediaInfo() { return mediaInfo; }
+    public void setMediaInfo(MediaObjectInfo mediaInfo) { this.mediaInfo = mediaInfo; }
+
+    public VideoProbeInfo getVideoProbe() { return videoProbe; }
+    public void setVideoProbe(VideoProbeInfo videoProbe) { this.videoProbe = videoProbe; }
+
+    public ProxyRendition getProxy() { return proxy; }
+    public void setProxy(ProxyRendition proxy) { this.proxy = proxy; }
+
+    public ScrubPreview getScrubPreview() { return scrubPreview; }
+    public void setScrubPreview(ScrubPreview scrubPreview) { this.scrubPreview = scrubPreview; }
 }
\ No newline at end of file
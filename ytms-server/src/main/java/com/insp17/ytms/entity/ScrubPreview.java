@@ -0,0 +1,80 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hover-preview sprite sheets of a video plus the WebVTT file that maps time ranges onto them. The sheets
+ * sit next to the VTT file as sprite_000.jpg, sprite_001.jpg, ... Only valid while the row still points
+ * at the file they were extracted from.
+ */
+@Embeddable
+public class ScrubPreview {
+
+    @Column(name = "scrub_vtt_url")
+    private String vttUrl;
+
+    @Column(name = "scrub_source_url")
+    private String sourceUrl;
+
+    @Column(name = "scrub_sprite_count")
+    private Integer spriteCount;
+
+    public ScrubPreview() {
+    }
+
+    public ScrubPreview(String vttUrl, String sourceUrl, Integer spriteCount) {
+        this.vttUrl = vttUrl;
+        this.sourceUrl = sourceUrl;
+        this.spriteCount = spriteCount;
+    }
+
+    public static String spriteName(int index) {
+        return String.format("sprite_%03d.jpg", index);
+    }
+
+    public boolean isFor(String storedUrl) {
+        return vttUrl != null && storedUrl != null && storedUrl.equals(sourceUrl);
+    }
+
+    // The VTT file and every sprite sheet
+    public List<String> storedUrls() {
+        List<String> urls = new ArrayList<>();
+        if (vttUrl == null) {
+            return urls;
+        }
+        urls.add(vttUrl);
+        String folder = vttUrl.substring(0, vttUrl.lastIndexOf('/') + 1);
+        for (int i = 0; i < (spriteCount != null ? spriteCount : 0); i++) {
+            urls.add(folder + spriteName(i));
+        }
+        return urls;
+    }
+
+    public String getVttUrl() {
+        return vttUrl;
+    }
+
+    public void setVttUrl(String vttUrl) {
+        this.vttUrl = vttUrl;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+
+    public Integer getSpriteCount() {
+        return spriteCount;
+    }
+
+    public void setSpriteCount(Integer spriteCount) {
+        this.spriteCount = spriteCount;
+    }
+}
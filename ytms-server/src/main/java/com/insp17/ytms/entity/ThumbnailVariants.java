@@ -0,0 +1,89 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Downscaled copies of a thumbnail, stored as an HTML {@code srcset} ("url 320w, url 640w, ...") so the
+ * client can hand it straight to an {@code <img>} and let the browser pick the smallest fitting image. The
+ * original is usually listed as the widest entry. Only valid while the row still points at the thumbnail
+ * they were generated from.
+ */
+@Embeddable
+public class ThumbnailVariants {
+
+    @Column(name = "thumbnail_srcset", columnDefinition = "TEXT")
+    private String srcset;
+
+    @Column(name = "thumbnail_variants_source")
+    private String sourceUrl;
+
+    public record Variant(int width, String url) {
+    }
+
+    public ThumbnailVariants() {
+    }
+
+    public ThumbnailVariants(String srcset, String sourceUrl) {
+        this.srcset = srcset;
+        this.sourceUrl = sourceUrl;
+    }
+
+    public static String toSrcset(List<Variant> variants) {
+        StringBuilder builder = new StringBuilder();
+        variants.stream().sorted(Comparator.comparingInt(Variant::width)).forEach(variant -> {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(variant.url()).append(' ').append(variant.width()).append('w');
+        });
+        return builder.toString();
+    }
+
+    // Narrowest first
+    public List<Variant> variants() {
+        List<Variant> variants = new ArrayList<>();
+        if (srcset == null || srcset.isBlank()) {
+            return variants;
+        }
+        for (String entry : srcset.split(",\\s*")) {
+            int space = entry.lastIndexOf(' ');
+            if (space > 0 && entry.endsWith("w")) {
+                variants.add(new Variant(Integer.parseInt(entry.substring(space + 1, entry.length() - 1)), entry.substring(0, space)));
+            }
+        }
+        return variants;
+    }
+
+    public boolean isFor(String thumbnailUrl) {
+        return srcset != null && thumbnailUrl != null && thumbnailUrl.equals(sourceUrl);
+    }
+
+    // The generated files; the original thumbnail isn't ours to delete
+    public List<String> storedUrls() {
+        return variants().stream()
+                .map(Variant::url)
+                .filter(url -> !url.equals(sourceUrl))
+                .toList();
+    }
+
+    public String getSrcset() {
+        return srcset;
+    }
+
+    public void setSrcset(String srcset) {
+        this.srcset = srcset;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public void setSourceUrl(String sourceUrl) {
+        this.sourceUrl = sourceUrl;
+    }
+}
@@ -46,6 +46,9 @@ public class VideoMetadata {
     @Column(name = "thumbnail_url")
     private String thumbnailUrl;
 
+    @Embedded
+    private ThumbnailVariants thumbnailVariants;
+
     @Column(nullable = false, length = 50)
     private String category = "Entertainment";
 
@@ -0,0 +1,74 @@
+package com.insp17.ytms.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Duration, resolution and codec read from a video's {@code moov} box after upload, so task lists can show
+ * them without touching the file. Only valid for the URL it was recorded for.
+ */
+@Embeddable
+public class VideoProbeInfo {
+
+    @Column(name = "probe_url")
+    private String url;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "video_width")
+    private Integer width;
+
+    @Column(name = "video_height")
+    private Integer height;
+
+    @Column(name = "video_codec", length = 16)
+    private String codec;
+
+    public VideoProbeInfo() {
+    }
+
+    public boolean describes(String storedUrl) {
+        return storedUrl != null && storedUrl.equals(url);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+}
@@ -32,6 +32,15 @@ public class VideoTask {
     @Column(name = "raw_video_filename")
     private String rawVideoFilename;
 
+    @Embedded
+    private MediaObjectInfo rawVideoInfo;
+
+    @Embedded
+    private VideoProbeInfo rawVideoProbe;
+
+    @Embedded
+    private ProxyRendition rawVideoProxy;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "assigned_editor_id")
     private User assignedEditor;
@@ -157,6 +166,30 @@ public class VideoTask {
         this.rawVideoFilename = rawVideoFilename;
     }
 
+    public MediaObjectInfo getRawVideoInfo() {
+        return rawVideoInfo;
+    }
+
+    public void setRawVideoInfo(MediaObjectInfo rawVideoInfo) {
+        this.rawVideoInfo = rawVideoInfo;
+    }
+
+    public VideoProbeInfo getRawVideoProbe() {
+        return rawVideoProbe;
+    }
+
+    public void setRawVideoProbe(VideoProbeInfo rawVideoProbe) {
+        this.rawVideoProbe = rawVideoProbe;
+    }
+
+    public ProxyRendition getRawVideoProxy() {
+        return rawVideoProxy;
+    }
+
+    public void setRawVideoProxy(ProxyRendition rawVideoProxy) {
+        this.rawVideoProxy = rawVideoProxy;
+    }
+
     public User getAssignedEditor() {
         return assignedEditor;
     }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -21,4 +22,26 @@ public interface AudioInstructionRepository extends JpaRepository<AudioInstructi
     @Modifying(clearAutomatically = true)
     @Query("DELETE FROM AudioInstruction a WHERE a.id = :id")
     int deleteByIdNativeSql(@Param("id") Long id);
+
+    // Recorded only while the row still points at the same file
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE AudioInstruction a SET a.mediaInfo.url = :url, a.mediaInfo.sizeBytes = :size, " +
+            "a.mediaInfo.contentType = :contentType, a.mediaInfo.generation = :generation, " +
+            "a.mediaInfo.crc32c = :crc32c, a.mediaInfo.lastModified = :lastModified " +
+            "WHERE a.id = :id AND a.audioUrl = :url")
+    int updateMediaInfo(@Param("id") Long id, @Param("url") String url, @Param("size") Long size,
+                        @Param("contentType") String contentType, @Param("generation") Long generation,
+                        @Param("crc32c") String crc32c, @Param("lastModified") Long lastModified);
+
+    // Only swaps if the URL is unchanged, so background jobs never overwrite a newer upload
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE AudioInstruction a SET a.audioUrl = :newUrl, a.audioFilename = :newFilename " +
+            "WHERE a.id = :id AND a.audioUrl = :oldUrl")
+    int swapAudioUrl(@Param("id") Long id, @Param("oldUrl") String oldUrl, @Param("newUrl") String newUrl,
+                     @Param("newFilename") String newFilename);
+
+    @Query("SELECT a.audioUrl FROM AudioInstruction a WHERE a.audioUrl IS NOT NULL")
+    List<String> findAllAudioUrls();
 }
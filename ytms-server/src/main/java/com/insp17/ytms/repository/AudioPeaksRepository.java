@@ -0,0 +1,24 @@
+package com.insp17.ytms.repository;
+
+import com.insp17.ytms.entity.AudioPeaks;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AudioPeaksRepository extends JpaRepository<AudioPeaks, Long> {
+    Optional<AudioPeaks> findByUrl(String url);
+
+    boolean existsByUrl(String url);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM AudioPeaks p WHERE p.url IN :urls")
+    int deleteByUrls(@Param("urls") List<String> urls);
+}
@@ -0,0 +1,22 @@
+package com.insp17.ytms.repository;
+
+import com.insp17.ytms.entity.MediaSeekIndex;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaSeekIndexRepository extends JpaRepository<MediaSeekIndex, Long> {
+    Optional<MediaSeekIndex> findByUrl(String url);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM MediaSeekIndex s WHERE s.url IN :urls")
+    int deleteByUrls(@Param("urls") List<String> urls);
+}
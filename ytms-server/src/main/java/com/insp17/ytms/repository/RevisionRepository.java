@@ -1,11 +1,13 @@
 package com.insp17.ytms.repository;
 
 import com.insp17.ytms.entity.Revision;
+import com.insp17.ytms.entity.ScrubPreview;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -28,4 +30,52 @@ public interface RevisionRepository extends JpaRepository<Revision, Long> {
     @Modifying(clearAutomatically = true)
     @Query("DELETE FROM Revision r WHERE r.id = :id")
     int deleteByIdNativeSql(@Param("id") Long id);
-}
\ No newline at end of file
+
+    // Only swaps if the URL is unchanged, so background jobs never overwrite a newer upload
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Revision r SET r.editedVideoUrl = :newUrl WHERE r.id = :id AND r.editedVideoUrl = :oldUrl")
+    int swapEditedVideoUrl(@Param("id") Long id, @Param("oldUrl") String oldUrl, @Param("newUrl") String newUrl);
+
+    // Recorded only while the row still points at the same file
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Revision r SET r.mediaInfo.url = :url, r.mediaInfo.sizeBytes = :size, " +
+            "r.mediaInfo.contentType = :contentType, r.mediaInfo.generation = :generation, " +
+            "r.mediaInfo.crc32c = :crc32c, r.mediaInfo.lastModified = :lastModified " +
+            "WHERE r.id = :id AND r.editedVideoUrl = :url")
+    int updateMediaInfo(@Param("id") Long id, @Param("url") String url, @Param("size") Long size,
+                        @Param("contentType") String contentType, @Param("generation") Long generation,
+                        @Param("crc32c") String crc32c, @Param("lastModified") Long lastModified);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Revision r SET r.videoProbe.url = :url, r.videoProbe.durationMs = :durationMs, " +
+            "r.videoProbe.width = :width, r.videoProbe.height = :height, r.videoProbe.codec = :codec " +
+            "WHERE r.id = :id AND r.editedVideoUrl = :url")
+    int updateVideoProbe(@Param("id") Long id, @Param("url") String url, @Param("durationMs") Long durationMs,
+                         @Param("width") Integer width, @Param("height") Integer height, @Param("codec") String codec);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Revision r SET r.proxy.url = :proxyUrl, r.proxy.sourceUrl = :sourceUrl, r.proxy.sizeBytes = :size " +
+            "WHERE r.id = :id AND r.editedVideoUrl = :sourceUrl")
+    int updateProxy(@Param("id") Long id, @Param("sourceUrl") String sourceUrl, @Param("proxyUrl") String proxyUrl,
+                    @Param("size") Long size);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Revision r SET r.scrubPreview.vttUrl = :vttUrl, r.scrubPreview.sourceUrl = :sourceUrl, " +
+            "r.scrubPreview.spriteCount = :spriteCount WHERE r.id = :id AND r.editedVideoUrl = :sourceUrl")
+    int updateScrubPreview(@Param("id") Long id, @Param("sourceUrl") String sourceUrl, @Param("vttUrl") String vttUrl,
+                           @Param("spriteCount") Integer spriteCount);
+
+    @Query("SELECT r.scrubPreview FROM Revision r WHERE r.scrubPreview.vttUrl IS NOT NULL")
+    List<ScrubPreview> findAllScrubPreviews();
+
+    @Query("SELECT r.editedVideoUrl FROM Revision r WHERE r.editedVideoUrl IS NOT NULL")
+    List<String> findAllEditedVideoUrls();
+
+    @Query("SELECT r.proxy.url FROM Revision r WHERE r.proxy.url IS NOT NULL")
+    List<String> findAllProxyUrls();
+}
@@ -0,0 +1,45 @@
+package com.insp17.ytms.repository;
+
+import com.insp17.ytms.entity.StorageDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StorageDeletionRepository extends JpaRepository<StorageDeletion, Long> {
+
+    @Query("SELECT d.id FROM StorageDeletion d WHERE d.nextAttemptAt <= :now ORDER BY d.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claiming pushes next_attempt_at out by a lease, so a worker that dies mid-batch is retried later
+    // and two servers never work on the same entry
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageDeletion d SET d.claimToken = :token, d.nextAttemptAt = :leaseUntil " +
+            "WHERE d.id IN :ids AND d.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+
+    List<StorageDeletion> findByClaimToken(String claimToken);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StorageDeletion d SET d.released = true WHERE d.id = :id")
+    int markReleased(@Param("id") Long id);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM StorageDeletion d WHERE d.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT d.url FROM StorageDeletion d")
+    List<String> findAllUrls();
+}
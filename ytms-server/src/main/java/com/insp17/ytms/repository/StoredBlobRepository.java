@@ -0,0 +1,38 @@
+package com.insp17.ytms.repository;
+
+import com.insp17.ytms.entity.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+    Optional<StoredBlob> findBySha256(String sha256);
+
+    Optional<StoredBlob> findByUrl(String url);
+
+    // Reference counts are only changed with single atomic statements, never read-modify-write
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1 WHERE b.sha256 = :sha256 AND b.size = :size")
+    int incrementRefCount(@Param("sha256") String sha256, @Param("size") long size);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.url = :url AND b.refCount > 0")
+    int decrementRefCount(@Param("url") String url);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM StoredBlob b WHERE b.url = :url AND b.refCount = 0")
+    int deleteUnreferenced(@Param("url") String url);
+
+    @Query("SELECT b.url FROM StoredBlob b")
+    List<String> findAllUrls();
+}
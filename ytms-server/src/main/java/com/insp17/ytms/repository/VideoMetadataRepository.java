@@ -1,11 +1,15 @@
 package com.insp17.ytms.repository;
 
+import com.insp17.ytms.entity.ThumbnailVariants;
 import com.insp17.ytms.entity.VideoMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -32,4 +36,17 @@ public interface VideoMetadataRepository extends JpaRepository<VideoMetadata, Lo
     boolean existsByVideoTaskId(Long taskId);
 
     void deleteByVideoTaskId(Long taskId);
-}
\ No newline at end of file
+
+    @Query("SELECT vm.thumbnailUrl FROM VideoMetadata vm WHERE vm.thumbnailUrl IS NOT NULL")
+    List<String> findAllThumbnailUrls();
+
+    // Recorded only while the metadata still points at the same thumbnail
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE VideoMetadata vm SET vm.thumbnailVariants.srcset = :srcset, vm.thumbnailVariants.sourceUrl = :sourceUrl " +
+            "WHERE vm.id = :id AND vm.thumbnailUrl = :sourceUrl")
+    int updateThumbnailVariants(@Param("id") Long id, @Param("sourceUrl") String sourceUrl, @Param("srcset") String srcset);
+
+    @Query("SELECT vm.thumbnailVariants FROM VideoMetadata vm WHERE vm.thumbnailVariants.srcset IS NOT NULL")
+    List<ThumbnailVariants> findAllThumbnailVariants();
+}
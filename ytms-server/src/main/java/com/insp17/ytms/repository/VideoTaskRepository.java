@@ -3,9 +3,11 @@ package com.insp17.ytms.repository;
 import com.insp17.ytms.entity.TaskStatus;
 import com.insp17.ytms.entity.VideoTask;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -92,6 +94,64 @@ public interface VideoTaskRepository extends JpaRepository<VideoTask, Long> {
              AND  vt.taskStatus = 'SCHEDULED'
            """)
     List<VideoTask> findScheduledTasksForUpload(@Param("uploadTime") LocalDateTime uploadTime);
+
+    // Only swaps if the URL is unchanged, so background jobs never overwrite a newer upload
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE VideoTask vt SET vt.rawVideoUrl = :newUrl WHERE vt.id = :id AND vt.rawVideoUrl = :oldUrl")
+    int swapRawVideoUrl(@Param("id") Long id, @Param("oldUrl") String oldUrl, @Param("newUrl") String newUrl);
+
+    // Recorded only while the task still points at the same raw video
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+           UPDATE VideoTask vt
+           SET    vt.rawVideoInfo.url = :url,
+                  vt.rawVideoInfo.sizeBytes = :size,
+                  vt.rawVideoInfo.contentType = :contentType,
+                  vt.rawVideoInfo.generation = :generation,
+                  vt.rawVideoInfo.crc32c = :crc32c,
+                  vt.rawVideoInfo.lastModified = :lastModified
+           WHERE  vt.id = :id
+             AND  vt.rawVideoUrl = :url
+           """)
+    int updateMediaInfo(@Param("id") Long id, @Param("url") String url, @Param("size") Long size,
+                        @Param("contentType") String contentType, @Param("generation") Long generation,
+                        @Param("crc32c") String crc32c, @Param("lastModified") Long lastModified);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+           UPDATE VideoTask vt
+           SET    vt.rawVideoProbe.url = :url,
+                  vt.rawVideoProbe.durationMs = :durationMs,
+                  vt.rawVideoProbe.width = :width,
+                  vt.rawVideoProbe.height = :height,
+                  vt.rawVideoProbe.codec = :codec
+           WHERE  vt.id = :id
+             AND  vt.rawVideoUrl = :url
+           """)
+    int updateVideoProbe(@Param("id") Long id, @Param("url") String url, @Param("durationMs") Long durationMs,
+                         @Param("width") Integer width, @Param("height") Integer height, @Param("codec") String codec);
+
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+           UPDATE VideoTask vt
+           SET    vt.rawVideoProxy.url = :proxyUrl,
+                  vt.rawVideoProxy.sourceUrl = :sourceUrl,
+                  vt.rawVideoProxy.sizeBytes = :size
+           WHERE  vt.id = :id
+             AND  vt.rawVideoUrl = :sourceUrl
+           """)
+    int updateRawVideoProxy(@Param("id") Long id, @Param("sourceUrl") String sourceUrl, @Param("proxyUrl") String proxyUrl,
+                            @Param("size") Long size);
+
+    @Query("SELECT vt.rawVideoUrl FROM VideoTask vt WHERE vt.rawVideoUrl IS NOT NULL")
+    List<String> findAllRawVideoUrls();
+
+    @Query("SELECT vt.rawVideoProxy.url FROM VideoTask vt WHERE vt.rawVideoProxy.url IS NOT NULL")
+    List<String> findAllRawVideoProxyUrls();
 }
 
 
@@ -110,7 +110,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "http://127.0.0.1:3000"));
 
         // Allow all methods
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
 
         // Allow all headers
         configuration.setAllowedHeaders(List.of("*"));
@@ -118,8 +118,9 @@ public class SecurityConfig {
         // Allow credentials
         configuration.setAllowCredentials(true);
 
-        // Expose Authorization header
-        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type"));
+        // Expose Authorization header, plus the headers resumable uploads rely on
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "Content-Type", "Location",
+                "Upload-Offset", "Upload-Length", "Tus-Resumable"));
 
         // Max age for preflight requests
         configuration.setMaxAge(3600L);
@@ -2,8 +2,10 @@ package com.insp17.ytms.service;
 
 import com.insp17.ytms.entity.AudioInstruction;
 import com.insp17.ytms.repository.AudioInstructionRepository;
+import com.insp17.ytms.service.media.MediaUploadedEvent;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -13,10 +15,17 @@ public class AudioInstructionService {
     private AudioInstructionRepository audioInstructionRepository;
     @Autowired
     private FileStorageService fileStorageService;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private StorageDeletionService storageDeletionService;
 
     @Transactional
     public AudioInstruction addInstruction(AudioInstruction audioInstruction) {
-        return audioInstructionRepository.save(audioInstruction);
+        AudioInstruction savedInstruction = audioInstructionRepository.save(audioInstruction);
+        eventPublisher.publishEvent(new MediaUploadedEvent(MediaUploadedEvent.Source.AUDIO_INSTRUCTION,
+                savedInstruction.getId(), savedInstruction.getAudioUrl()));
+        return savedInstruction;
     }
 
     @Transactional
@@ -31,12 +40,8 @@ public class AudioInstructionService {
         AudioInstruction audioInstruction = audioInstructionRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("AudioInstruction not found with ID: " + id));
 
-        try {
-            fileStorageService.deleteFileFromGCP(audioInstruction.getAudioUrl());
-            System.out.println("File deleted from GCP.");
-        } catch (Exception e) {
-            System.err.println("Error deleting from GCP: " + e.getMessage());
-        }
+        storageDeletionService.enqueue(audioInstruction.getAudioUrl());
+        System.out.println("Queued audio file for deletion.");
 
         System.out.println("About to delete from database...");
         int deletedRows = audioInstructionRepository.deleteByIdNativeSql(id);
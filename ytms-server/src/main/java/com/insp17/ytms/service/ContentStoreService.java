@@ -0,0 +1,91 @@
+package com.insp17.ytms.service;
+
+import com.insp17.ytms.entity.StorageDeletion;
+import com.insp17.ytms.entity.StoredBlob;
+import com.insp17.ytms.repository.StorageDeletionRepository;
+import com.insp17.ytms.repository.StoredBlobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Digest-to-object table behind deduplicated media storage. Every row that references a stored object
+ * holds one reference; the object may only be deleted once the count drops to zero.
+ * <p>
+ * Objects uploaded before this existed (or while it is disabled) are untracked and treated as
+ * exclusively owned, so deleting them behaves as before.
+ */
+@Service
+public class ContentStoreService {
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    @Value("${media.dedup.enabled:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Takes a reference on existing content with this digest and size, if any
+    private Optional<String> acquire(String sha256, long size) {
+        if (!enabled || storedBlobRepository.incrementRefCount(sha256, size) == 0) {
+            return Optional.empty();
+        }
+        return storedBlobRepository.findBySha256(sha256).map(StoredBlob::getUrl);
+    }
+
+    /**
+     * Records a freshly uploaded object and returns the URL callers should reference. When identical content
+     * is already stored, that object's URL is returned with an extra reference and the caller should delete
+     * its own copy.
+     */
+    public String register(String sha256, String url, long size) {
+        Optional<String> existing = acquire(sha256, size);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        try {
+            storedBlobRepository.saveAndFlush(new StoredBlob(sha256, url, size));
+            return url;
+        } catch (DataIntegrityViolationException e) {
+            // Someone registered the same content concurrently
+            return acquire(sha256, size).orElse(url);
+        }
+    }
+
+    /**
+     * Drops the reference held by a queued deletion. The decrement and the entry's released flag commit
+     * together, so a retry after a crash never drops the same reference twice. If other references remain the
+     * entry is removed instead, since there is nothing left for it to delete. Returns true if the underlying
+     * object may now be deleted.
+     */
+    @Transactional
+    public boolean release(StorageDeletion entry) {
+        boolean lastReference = release(entry.getUrl());
+        if (lastReference) {
+            storageDeletionRepository.markReleased(entry.getId());
+        } else {
+            storageDeletionRepository.deleteByIds(List.of(entry.getId()));
+        }
+        return lastReference;
+    }
+
+    private boolean release(String url) {
+        if (storedBlobRepository.decrementRefCount(url) == 0) {
+            // Not tracked (or already at zero): the caller owns the object outright
+            return storedBlobRepository.findByUrl(url).isEmpty();
+        }
+        // Deleting only a zero-count row means a concurrent acquire keeps the object alive
+        return storedBlobRepository.deleteUnreferenced(url) > 0;
+    }
+}
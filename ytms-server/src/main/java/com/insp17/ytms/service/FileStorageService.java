@@ -1,10 +1,22 @@
 package com.insp17.ytms.service;
 
 import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.BatchResult;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.*;
 import com.insp17.ytms.dtos.ThumbnailUploadResult;
+import com.insp17.ytms.entity.MediaObjectInfo;
+import com.insp17.ytms.service.storage.CachedRangeInputStream;
+import com.insp17.ytms.service.storage.MediaChunkCache;
+import com.insp17.ytms.service.storage.MediaDiskCache;
+import com.insp17.ytms.service.storage.SignedUrlCache;
+import com.insp17.ytms.service.storage.UploadProgressListener;
+import com.insp17.ytms.service.storage.cdc.ChunkManifest;
+import com.insp17.ytms.service.storage.cdc.ChunkedObjectStore;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -12,16 +24,36 @@ import javax.annotation.PostConstruct;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 @Service
@@ -42,10 +74,44 @@ public class FileStorageService {
     @Value("${gcp.service-account-key-path}")
     private String serviceAccountKeyPath;
 
+    // Bytes buffered per resumable upload request; GCS requires a multiple of 256KB
+    @Value("${gcp.upload.chunk-size:16777216}")
+    private int uploadChunkSize;
+
+    @Value("${media.cdc.min-chunk-size:524288}")
+    private int cdcMinChunkSize;
+
+    @Value("${media.cdc.avg-chunk-size:2097152}")
+    private int cdcAvgChunkSize;
+
+    @Value("${media.cdc.max-chunk-size:8388608}")
+    private int cdcMaxChunkSize;
+
     private Storage storage = null;
 
+    private ChunkedObjectStore chunkedObjectStore;
+
+    @Autowired
+    private MediaChunkCache mediaChunkCache;
+
+    @Autowired
+    private MediaDiskCache mediaDiskCache;
+
+    @Autowired
+    private SignedUrlCache signedUrlCache;
+
+    @Autowired
+    private ContentStoreService contentStoreService;
+
     private static final long MAX_VIDEO_SIZE = 10L * 1024 * 1024 * 1024; // 10GB
     private static final long MAX_AUDIO_SIZE = 500L * 1024 * 1024; // 500MB
+    private static final int RANGE_READ_CHUNK_SIZE = 2 * 1024 * 1024; // 2MB per GCS read call
+    private static final int UPLOAD_CHUNK_GRANULARITY = 256 * 1024;
+    private static final int UPLOAD_COPY_BUFFER_SIZE = 256 * 1024;
+    // A single GCS compose call accepts at most 32 source objects
+    private static final int MAX_COMPOSITE_PARTS = 32;
+    private static final String COMPOSITE_PARTS_PREFIX = "tmp/composite-parts/";
+    private static final String PUBLIC_URL_PREFIX = "https://storage.googleapis.com/";
 
     public FileStorageService() {
     }
@@ -65,6 +131,8 @@ public class FileStorageService {
                 .build()
                 .getService();
 
+        this.chunkedObjectStore = new ChunkedObjectStore(storage, gcpBucketName,
+                cdcMinChunkSize, cdcAvgChunkSize, cdcMaxChunkSize);
     }
 
     public String generateResumableUploadUrl(String objectName, String contentType) throws StorageException {
@@ -96,27 +164,157 @@ public class FileStorageService {
     }
 
 
+    /**
+     * Starts a parallel composite upload: the client PUTs each part to its own signed URL concurrently
+     * and then calls {@link #composeParallelUpload} to stitch them into {@code objectName}.
+     */
+    public ParallelUploadSession createParallelUpload(String objectName, String contentType, int parts, Long ownerId)
+            throws IOException {
+        if (parts < 1 || parts > MAX_COMPOSITE_PARTS) {
+            throw new IllegalArgumentException("Number of parts must be between 1 and " + MAX_COMPOSITE_PARTS);
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        List<String> partUrls = new ArrayList<>(parts);
+        for (int partNumber = 1; partNumber <= parts; partNumber++) {
+            BlobInfo partInfo = BlobInfo.newBuilder(BlobId.of(gcpBucketName, partObjectName(uploadId, partNumber)))
+                    .setContentType(contentType)
+                    .build();
+
+            URL signedUrl = storage.signUrl(
+                    partInfo,
+                    60,
+                    TimeUnit.MINUTES,
+                    Storage.SignUrlOption.httpMethod(HttpMethod.PUT),
+                    Storage.SignUrlOption.withContentType(),
+                    Storage.SignUrlOption.withV4Signature()
+            );
+            partUrls.add(signedUrl.toString());
+        }
+
+        // Kept next to the parts, where no signed URL can write, so finalizing never trusts the client for these
+        Properties session = new Properties();
+        session.setProperty("objectName", objectName);
+        session.setProperty("contentType", contentType);
+        session.setProperty("parts", String.valueOf(parts));
+        session.setProperty("ownerId", String.valueOf(ownerId));
+        StringWriter writer = new StringWriter();
+        session.store(writer, null);
+        storage.create(BlobInfo.newBuilder(BlobId.of(gcpBucketName, sessionObjectName(uploadId)))
+                        .setContentType("text/plain")
+                        .build(),
+                writer.toString().getBytes(StandardCharsets.UTF_8),
+                Storage.BlobTargetOption.doesNotExist());
+
+        System.out.println("Created parallel upload " + uploadId + " for " + objectName + " with " + parts + " parts");
+        return new ParallelUploadSession(uploadId, objectName, partUrls);
+    }
+
+    /**
+     * Composes the uploaded parts into the target recorded when the session was created, checks its size
+     * and CRC32C and removes the temporary parts. A composed object that fails verification is deleted
+     * again, so nothing can reference a corrupt upload.
+     */
+    public StoredObject composeParallelUpload(String uploadId, Long ownerId, long expectedSize, String expectedCrc32c)
+            throws IOException {
+        UUID.fromString(uploadId);
+        if (expectedCrc32c == null || expectedCrc32c.isBlank()) {
+            throw new IllegalArgumentException("expectedCrc32c is required");
+        }
+
+        BlobId sessionId = BlobId.of(gcpBucketName, sessionObjectName(uploadId));
+        Blob sessionBlob = storage.get(sessionId);
+        Properties session = new Properties();
+        if (sessionBlob != null) {
+            session.load(new StringReader(new String(sessionBlob.getContent(), StandardCharsets.UTF_8)));
+        }
+        if (sessionBlob == null || !String.valueOf(ownerId).equals(session.getProperty("ownerId"))) {
+            throw new IllegalArgumentException("Unknown parallel upload " + uploadId);
+        }
+        String objectName = session.getProperty("objectName");
+        String contentType = session.getProperty("contentType");
+        int parts = Integer.parseInt(session.getProperty("parts"));
+
+        List<BlobId> partIds = new ArrayList<>(parts);
+        for (int partNumber = 1; partNumber <= parts; partNumber++) {
+            partIds.add(BlobId.of(gcpBucketName, partObjectName(uploadId, partNumber)));
+        }
+
+        try {
+            List<Blob> uploadedParts = storage.get(partIds);
+            for (int i = 0; i < uploadedParts.size(); i++) {
+                if (uploadedParts.get(i) == null) {
+                    throw new IOException("Part " + (i + 1) + " of upload " + uploadId + " is missing");
+                }
+            }
+
+            Storage.ComposeRequest.Builder compose = Storage.ComposeRequest.newBuilder()
+                    .setTarget(BlobInfo.newBuilder(BlobId.of(gcpBucketName, objectName))
+                            .setContentType(contentType)
+                            .build())
+                    .setTargetOptions(Storage.BlobTargetOption.doesNotExist());
+            for (BlobId partId : partIds) {
+                compose.addSource(partId.getName());
+            }
+            Blob composed = storage.compose(compose.build());
+
+            boolean sizeMatches = composed.getSize() != null && composed.getSize() == expectedSize;
+            boolean crcMatches = expectedCrc32c.equals(composed.getCrc32c());
+            if (!sizeMatches || !crcMatches) {
+                storage.delete(composed.getBlobId());
+                throw new IOException("Composed object " + objectName + " failed verification (size " + composed.getSize()
+                        + ", expected " + expectedSize + ", crc32c " + composed.getCrc32c() + ", expected " + expectedCrc32c + ")");
+            }
+
+            System.out.println("Composed " + parts + " parts into " + objectName + " (" + composed.getSize() + " bytes)");
+            return new StoredObject(String.format("gs://%s/%s", gcpBucketName, objectName), composed.getSize(),
+                    composed.getContentType(), composed.getGeneration(),
+                    composed.getUpdateTimeOffsetDateTime() != null ? composed.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli() : 0);
+        } finally {
+            // Parts are never needed after a compose attempt; a failed upload starts over with a new session.
+            List<BlobId> temporary = new ArrayList<>(partIds);
+            temporary.add(sessionId);
+            storage.delete(temporary);
+        }
+    }
+
+    private static String partObjectName(String uploadId, int partNumber) {
+        return COMPOSITE_PARTS_PREFIX + uploadId + "/" + String.format("part-%05d", partNumber);
+    }
+
+    private static String sessionObjectName(String uploadId) {
+        return COMPOSITE_PARTS_PREFIX + uploadId + "/session";
+    }
+
     public FileUploadResult uploadVideo(MultipartFile file, String folder) throws IOException {
+        return uploadVideo(file, folder, UploadProgressListener.logging(file.getOriginalFilename(), 10));
+    }
+
+    public FileUploadResult uploadVideo(MultipartFile file, String folder, UploadProgressListener progress) throws IOException {
         validateVideoFile(file);
         String filename = generateUniqueFilename(file.getOriginalFilename());
         String filePath = folder + "/" + filename;
 
         if ("GCP".equals(deploymentType) && storage != null) {
-            return uploadToGCP(file, filePath);
+            return uploadToGCP(file, filePath, progress);
         } else {
-            return uploadToInternal(file, filePath);
+            return uploadToInternal(file, filePath, progress);
         }
     }
 
     public FileUploadResult uploadAudio(MultipartFile file, String folder) throws IOException {
+        return uploadAudio(file, folder, UploadProgressListener.logging(file.getOriginalFilename(), 10));
+    }
+
+    public FileUploadResult uploadAudio(MultipartFile file, String folder, UploadProgressListener progress) throws IOException {
         validateAudioFile(file);
         String filename = generateUniqueFilename(file.getOriginalFilename());
         String filePath = folder + "/" + filename;
 
         if ("GCP".equals(deploymentType) && storage != null) {
-            return uploadToGCP(file, filePath);
+            return uploadToGCP(file, filePath, progress);
         } else {
-            return uploadToInternal(file, filePath);
+            return uploadToInternal(file, filePath, progress);
         }
     }
 
@@ -129,16 +327,7 @@ public class FileStorageService {
             throw new IOException("Video file size exceeds maximum limit of 10GB");
         }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("application/")) {
-            throw new IOException("File must be a video file");
-        }
-
-        // Check file extension
-        String filename = file.getOriginalFilename();
-        if (filename == null || !isValidVideoExtension(filename)) {
-            throw new IOException("Invalid video file extension. Supported: mp4, mov, avi, wmv, webm, flv, m4v");
-        }
+        validateVideoHeaders(file.getOriginalFilename(), file.getContentType());
     }
 
     private void validateAudioFile(MultipartFile file) throws IOException {
@@ -150,13 +339,27 @@ public class FileStorageService {
             throw new IOException("Audio file size exceeds maximum limit of 500MB");
         }
 
-        String contentType = file.getContentType();
+        validateAudioHeaders(file.getOriginalFilename(), file.getContentType());
+    }
+
+    // Header checks are separate from size checks so streamed uploads can validate before any bytes arrive
+    public void validateVideoHeaders(String filename, String contentType) throws IOException {
+        if (contentType == null || !contentType.startsWith("application/")) {
+            throw new IOException("File must be a video file");
+        }
+
+        // Check file extension
+        if (filename == null || !isValidVideoExtension(filename)) {
+            throw new IOException("Invalid video file extension. Supported: mp4, mov, avi, wmv, webm, flv, m4v");
+        }
+    }
+
+    public void validateAudioHeaders(String filename, String contentType) throws IOException {
         if (contentType == null || !contentType.startsWith("audio/")) {
             throw new IOException("File must be an audio file");
         }
 
         // Check file extension
-        String filename = file.getOriginalFilename();
         if (filename == null || !isValidAudioExtension(filename)) {
             throw new IOException("Invalid audio file extension. Supported: mp3, wav, m4a, aac, ogg, flac");
         }
@@ -196,8 +399,9 @@ public class FileStorageService {
                 .setContentType(file.getContentType())
                 .build();
 
-        Blob blob = storage.create(blobInfo, file.getBytes());
-
+        try (InputStream inputStream = file.getInputStream()) {
+            writeToGCP(blobInfo, inputStream, file.getSize(), UploadProgressListener.NONE);
+        }
 
         String publicUrl = String.format("https://storage.googleapis.com/%s/%s", gcpPublicBucketName, filename);
 
@@ -205,7 +409,45 @@ public class FileStorageService {
     }
 
 
-    private FileUploadResult uploadToGCP(MultipartFile file, String filePath) throws IOException {
+    /**
+     * Writes a small generated asset (e.g. a sprite sheet) to the public bucket and returns its public URL.
+     */
+    public String uploadPublicObject(String objectName, byte[] data, String contentType, String cacheControl) throws IOException {
+        if (storage == null) {
+            throw new IOException("GCP Storage is not configured");
+        }
+
+        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(gcpPublicBucketName, objectName))
+                .setContentType(contentType)
+                .setCacheControl(cacheControl)
+                .build();
+        storage.create(blobInfo, data);
+        return PUBLIC_URL_PREFIX + gcpPublicBucketName + "/" + objectName;
+    }
+
+    /**
+     * Reads a whole object from the public bucket by its public URL, refusing anything over {@code maxBytes}.
+     */
+    public byte[] readPublicObject(String publicUrl, long maxBytes) throws IOException {
+        if (storage == null) {
+            throw new IOException("GCP Storage is not configured");
+        }
+        String prefix = PUBLIC_URL_PREFIX + gcpPublicBucketName + "/";
+        if (publicUrl == null || !publicUrl.startsWith(prefix)) {
+            throw new IOException("Not an object in the public bucket: " + publicUrl);
+        }
+
+        Blob blob = storage.get(BlobId.of(gcpPublicBucketName, publicUrl.substring(prefix.length())));
+        if (blob == null) {
+            throw new IOException("File not found in GCS: " + publicUrl);
+        }
+        if (blob.getSize() != null && blob.getSize() > maxBytes) {
+            throw new IOException("Public object is " + blob.getSize() + " bytes, limit is " + maxBytes);
+        }
+        return blob.getContent();
+    }
+
+    private FileUploadResult uploadToGCP(MultipartFile file, String filePath, UploadProgressListener progress) throws IOException {
         if (storage == null) {
             throw new IOException("GCP Storage is not configured");
         }
@@ -215,14 +457,125 @@ public class FileStorageService {
                 .setContentType(file.getContentType())
                 .build();
 
-        // Upload the file
-        Blob blob = storage.create(blobInfo, file.getBytes());
+        // Stream the file instead of file.getBytes(), which would put the whole upload on the heap
+        MessageDigest digest = newUploadDigest();
+        try (InputStream inputStream = digesting(file.getInputStream(), digest)) {
+            writeToGCP(blobInfo, inputStream, file.getSize(), progress);
+        }
 
         String url = String.format("gs://%s/%s", gcpBucketName, filePath);
-        return new FileUploadResult(url, file.getOriginalFilename(), file.getSize());
+        return deduplicate(new FileUploadResult(url, file.getOriginalFilename(), file.getSize()), digest);
     }
 
-    private FileUploadResult uploadToInternal(MultipartFile file, String filePath) throws IOException {
+    /**
+     * Streams {@code inputStream} into a resumable upload session. Memory use is bounded by the
+     * upload chunk size, whatever the size of the object.
+     */
+    private long writeToGCP(BlobInfo blobInfo, InputStream inputStream, long totalBytes, UploadProgressListener progress) throws IOException {
+        try (WriteChannel writer = storage.writer(blobInfo)) {
+            writer.setChunkSize(Math.max(UPLOAD_CHUNK_GRANULARITY, uploadChunkSize / UPLOAD_CHUNK_GRANULARITY * UPLOAD_CHUNK_GRANULARITY));
+            return copyWithProgress(inputStream, writer, totalBytes, progress);
+        } catch (IOException | RuntimeException e) {
+            // Closing the channel finalizes whatever was written, so a failed source leaves a truncated object behind
+            storage.delete(blobInfo.getBlobId());
+            throw e;
+        }
+    }
+
+    /**
+     * Uploads a stream of unknown length (e.g. a multipart part read straight off the request) to the
+     * active backend under {@code folder}. Callers are responsible for validating and size-limiting the stream.
+     */
+    public FileUploadResult uploadStream(InputStream inputStream, String originalFilename, String contentType,
+                                         String folder, UploadProgressListener progress) throws IOException {
+        String filename = generateUniqueFilename(originalFilename);
+        String filePath = folder + "/" + filename;
+        MessageDigest digest = newUploadDigest();
+        InputStream source = digesting(inputStream, digest);
+
+        if ("GCP".equals(deploymentType) && storage != null) {
+            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(gcpBucketName, filePath))
+                    .setContentType(contentType)
+                    .build();
+            long size = writeToGCP(blobInfo, source, -1, progress);
+            return deduplicate(new FileUploadResult(String.format("gs://%s/%s", gcpBucketName, filePath), originalFilename, size), digest);
+        }
+
+        Path fullPath = Paths.get(internalStoragePath).resolve(filePath);
+        Files.createDirectories(fullPath.getParent());
+        long size;
+        try (FileChannel target = FileChannel.open(fullPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = copyWithProgress(source, target, -1, progress);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(fullPath);
+            throw e;
+        }
+        return deduplicate(new FileUploadResult("/files/" + filePath, originalFilename, size), digest);
+    }
+
+    // SHA-256 is computed while the bytes stream through, so dedup costs no extra pass over the file
+    private MessageDigest newUploadDigest() {
+        if (!contentStoreService.isEnabled()) {
+            return null;
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static InputStream digesting(InputStream inputStream, MessageDigest digest) {
+        return digest == null ? inputStream : new DigestInputStream(inputStream, digest);
+    }
+
+    /**
+     * Registers a finished upload by digest. If identical content was already stored, the new copy is
+     * removed and the existing object is returned instead.
+     */
+    private FileUploadResult deduplicate(FileUploadResult uploaded, MessageDigest digest) throws IOException {
+        if (digest == null) {
+            return uploaded;
+        }
+
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        String canonicalUrl = contentStoreService.register(sha256, uploaded.getUrl(), uploaded.getSize());
+        if (canonicalUrl.equals(uploaded.getUrl())) {
+            return uploaded;
+        }
+
+        System.out.println("Upload of " + uploaded.getOriginalFilename() + " duplicates " + canonicalUrl + ", discarding " + uploaded.getUrl());
+        deleteStoredObject(uploaded.getUrl());
+        return new FileUploadResult(canonicalUrl, uploaded.getOriginalFilename(), uploaded.getSize());
+    }
+
+    private void deleteStoredObject(String url) throws IOException {
+        if (isInternalUrl(url)) {
+            Files.deleteIfExists(resolveInternalPath(url));
+        } else {
+            storage.delete(gcpBucketName, getString(url));
+        }
+    }
+
+    private long copyWithProgress(InputStream inputStream, WritableByteChannel target, long totalBytes,
+                                  UploadProgressListener progress) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(inputStream);
+        ByteBuffer buffer = ByteBuffer.allocate(UPLOAD_COPY_BUFFER_SIZE);
+        long transferred = 0;
+        progress.onProgress(0, totalBytes);
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                transferred += target.write(buffer);
+            }
+            buffer.clear();
+            progress.onProgress(transferred, totalBytes);
+        }
+        return transferred;
+    }
+
+    private FileUploadResult uploadToInternal(MultipartFile file, String filePath, UploadProgressListener progress) throws IOException {
         Path uploadPath = Paths.get(internalStoragePath);
         if (!Files.exists(uploadPath)) {
             try {
@@ -236,28 +589,52 @@ public class FileStorageService {
         Files.createDirectories(fullPath.getParent());
 
         // Use streaming copy for large files to avoid memory issues
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, fullPath, StandardCopyOption.REPLACE_EXISTING);
+        MessageDigest digest = newUploadDigest();
+        try (InputStream inputStream = digesting(file.getInputStream(), digest);
+             FileChannel target = FileChannel.open(fullPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            copyWithProgress(inputStream, target, file.getSize(), progress);
         }
 
         String url = "/files/" + filePath;
-        return new FileUploadResult(url, file.getOriginalFilename(), file.getSize());
+        return deduplicate(new FileUploadResult(url, file.getOriginalFilename(), file.getSize()), digest);
     }
 
 
     public String getSignedUrlToDownload(String gcsUrl) throws IOException {
 
-        String objectName = getString(gcsUrl);
+        // Chunked files have no single object to sign until their chunks are composed into one
+        String objectName = isChunkedUrl(gcsUrl) ? chunkedObjectStore.materialize(gcsUrl) : getString(gcsUrl);
+
+        return signDownloadUrl(objectName);
+    }
 
-        URL signedUrl = storage.signUrl(
-                BlobInfo.newBuilder(gcpBucketName, objectName).build(),
-                60,
+    /**
+     * Signs a download URL valid for {@code minutes}, bypassing the cache. For long-running readers like
+     * ffmpeg, which can reconnect or seek well after a cached URL would have expired.
+     */
+    public String getSignedUrlToDownload(String gcsUrl, long minutes) throws IOException {
+        String objectName = isChunkedUrl(gcsUrl) ? chunkedObjectStore.materialize(gcsUrl) : getString(gcsUrl);
+        // V4 signatures are capped at seven days
+        return storage.signUrl(
+                BlobInfo.newBuilder(BlobId.of(gcpBucketName, objectName)).build(),
+                Math.min(minutes, TimeUnit.DAYS.toMinutes(7)),
                 TimeUnit.MINUTES,
                 Storage.SignUrlOption.httpMethod(HttpMethod.GET),
                 Storage.SignUrlOption.withV4Signature()
-        );
+        ).toString();
+    }
 
-        return signedUrl.toString();
+    // Download URLs are cached and share one expiry (media.signed-url.ttl-minutes)
+    private String signDownloadUrl(String objectName) {
+        SignedUrlCache.Key key = new SignedUrlCache.Key(gcpBucketName, objectName, HttpMethod.GET.name());
+        return signedUrlCache.get(key, ttlMinutes -> storage.signUrl(
+                BlobInfo.newBuilder(BlobId.of(gcpBucketName, objectName)).build(),
+                ttlMinutes,
+                TimeUnit.MINUTES,
+                Storage.SignUrlOption.httpMethod(HttpMethod.GET),
+                Storage.SignUrlOption.withV4Signature()
+        ).toString());
     }
 
     private static String getString(String gcsUrl) {
@@ -346,18 +723,18 @@ public class FileStorageService {
         return gcpBucketName;
     }
 
+    // Uploads go to local disk when not deployed on GCP (or when GCS failed to initialise)
+    public boolean isInternalStorage() {
+        return !("GCP".equals(deploymentType) && storage != null);
+    }
+
+    public Path getInternalStoragePath() {
+        return Paths.get(internalStoragePath);
+    }
+
     public String generateSignedUrlForDownload(String objectName) {
         try {
-            BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(gcpBucketName, objectName)).build();
-
-            URL signedUrl = storage.signUrl(
-                    blobInfo,
-                    15,
-                    TimeUnit.MINUTES,
-                    Storage.SignUrlOption.withV4Signature(),
-                    Storage.SignUrlOption.httpMethod(HttpMethod.GET)
-            );
-            return signedUrl.toString();
+            return signDownloadUrl(objectName);
         } catch (Exception e) {
             System.err.println("Error generating signed URL for " + objectName + ": " + e.getMessage());
             throw new RuntimeException("Could not generate signed URL", e);
@@ -365,33 +742,345 @@ public class FileStorageService {
     }
 
     public byte[] downloadFile(String gcsUrl) throws IOException {
+        StoredObject object = getObjectInfo(gcsUrl);
+
+        // Read through openRange so whole-file downloads also go through the chunk caches
+        try (InputStream inputStream = openRange(object, 0, object.getSize())) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Looks up size, content type and generation of a stored object without downloading it.
+     */
+    public StoredObject getObjectInfo(String gcsUrl) throws IOException {
+        if (isInternalUrl(gcsUrl)) {
+            Path path = resolveInternalPath(gcsUrl);
+            if (!Files.isRegularFile(path)) {
+                throw new IOException("File not found in internal storage: " + gcsUrl);
+            }
+            return new StoredObject(gcsUrl, Files.size(path), Files.probeContentType(path), null,
+                    Files.getLastModifiedTime(path).toMillis());
+        }
+
+        if (isChunkedUrl(gcsUrl)) {
+            ChunkManifest manifest = chunkedObjectStore.load(gcsUrl);
+            return new StoredObject(gcsUrl, manifest.getSize(), manifest.getContentType(), manifest.getGeneration(),
+                    manifest.getLastModified());
+        }
+
         String objectName = getString(gcsUrl);
-        BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(gcpBucketName, objectName)).build();
-        Blob blob = storage.get(blobInfo.getBlobId());
+        Blob blob = storage.get(BlobId.of(gcpBucketName, objectName),
+                Storage.BlobGetOption.fields(Storage.BlobField.SIZE, Storage.BlobField.CONTENT_TYPE,
+                        Storage.BlobField.GENERATION, Storage.BlobField.UPDATED, Storage.BlobField.CRC32C));
 
-        // Check if the blob exists
         if (blob == null) {
             throw new IOException("File not found in GCS: " + gcsUrl);
         }
 
-        // Download the file's content into a byte array
-        return blob.getContent();
+        long lastModified = blob.getUpdateTimeOffsetDateTime() != null
+                ? blob.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli()
+                : 0L;
+        return new StoredObject(gcsUrl, blob.getSize() != null ? blob.getSize() : 0L,
+                blob.getContentType(), blob.getGeneration(), lastModified, blob.getCrc32c());
     }
 
-    @Async("gcpDeleteTaskExecutor")
-    public void deleteFileFromGCP(String videoUrl) {
-        if (videoUrl == null) {
-            return;
+    /**
+     * Same as {@link #getObjectInfo(String)}, but answered from the facts recorded on the media row when
+     * they still describe {@code url}, which saves a storage round-trip per request.
+     */
+    public StoredObject getObjectInfo(String url, MediaObjectInfo recorded) throws IOException {
+        if (recorded != null && recorded.describes(url)) {
+            return new StoredObject(url, recorded.getSizeBytes(), recorded.getContentType(), recorded.getGeneration(),
+                    recorded.getLastModified() != null ? recorded.getLastModified() : 0L, recorded.getCrc32c());
         }
+        return getObjectInfo(url);
+    }
 
-        String objectName = getString(videoUrl);
-        boolean deleted = storage.delete(gcpBucketName, objectName);
+    /**
+     * Opens a stream over bytes [start, start + length) of the object. Only the requested
+     * range is fetched from GCS, pinned to the generation returned by {@link #getObjectInfo}
+     * so a concurrent overwrite can't mix bytes from two versions.
+     */
+    public InputStream openRange(StoredObject object, long start, long length) throws IOException {
+        if (isInternalUrl(object.getUrl())) {
+            FileChannel channel = FileChannel.open(resolveInternalPath(object.getUrl()), StandardOpenOption.READ);
+            channel.position(start);
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        }
 
-        if (!deleted) {
-            System.err.println("Warning: GCP file not deleted (may not exist): " + videoUrl);
-        } else {
-            System.out.println("Deleted GCP object: " + videoUrl);
+        if (isChunkedUrl(object.getUrl())) {
+            ChunkManifest manifest = chunkedObjectStore.load(object.getUrl());
+            if (mediaChunkCache.isEnabled() && object.getGeneration() != null) {
+                return new CachedRangeInputStream(mediaChunkCache,
+                        (chunkIndex, target) -> loadChunk(object, chunkIndex, target,
+                                (rangeStart, rangeEnd, buffer) -> chunkedObjectStore.readRange(manifest, rangeStart, rangeEnd, buffer)),
+                        object.getUrl(), object.getGeneration(), start, length);
+            }
+            return chunkedObjectStore.openRange(manifest, start, length);
+        }
+
+        String objectName = getString(object.getUrl());
+        BlobId blobId = BlobId.of(gcpBucketName, objectName, object.getGeneration());
+
+        if (mediaChunkCache.isEnabled() && object.getGeneration() != null) {
+            return new CachedRangeInputStream(mediaChunkCache,
+                    (chunkIndex, target) -> loadChunk(object, chunkIndex, target,
+                            (rangeStart, rangeEnd, buffer) -> readGcpRange(blobId, rangeStart, rangeEnd, buffer)),
+                    object.getUrl(), object.getGeneration(), start, length);
+        }
+
+        ReadChannel reader = storage.reader(blobId);
+        reader.setChunkSize(RANGE_READ_CHUNK_SIZE);
+        reader.seek(start);
+        reader.limit(start + length);
+        return Channels.newInputStream(reader);
+    }
+
+    @FunctionalInterface
+    private interface RangeReader {
+        int read(long start, long end, ByteBuffer target) throws IOException;
+    }
+
+    // Memory misses land here: try the local disk tier before going back to the bucket.
+    private int loadChunk(StoredObject object, long chunkIndex, ByteBuffer target, RangeReader origin) throws IOException {
+        MediaChunkCache.ChunkKey key = new MediaChunkCache.ChunkKey(object.getUrl(), object.getGeneration(), chunkIndex);
+        int length = mediaDiskCache.read(key, target);
+        if (length >= 0) {
+            return length;
+        }
+
+        long chunkSize = mediaChunkCache.getChunkSize();
+        length = origin.read(chunkIndex * chunkSize, Math.min(object.getSize(), (chunkIndex + 1) * chunkSize), target);
+        mediaDiskCache.offer(key, target.duplicate().flip());
+        return length;
+    }
+
+    private int readGcpRange(BlobId blobId, long start, long end, ByteBuffer target) throws IOException {
+        try (ReadChannel reader = storage.reader(blobId)) {
+            reader.setChunkSize(RANGE_READ_CHUNK_SIZE);
+            reader.seek(start);
+            reader.limit(end);
+            int total = 0;
+            while (target.hasRemaining()) {
+                int n = reader.read(target);
+                if (n < 0) {
+                    break;
+                }
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    public boolean isChunkedUrl(String url) {
+        return ChunkedObjectStore.isChunkedUrl(url);
+    }
+
+    /**
+     * Re-stores a GCS object as content-defined chunks and returns the new cdc:// URL. The original object
+     * is left in place; the caller deletes it once nothing references it any more.
+     */
+    public ChunkedObjectStore.StoreResult convertToChunked(String gcsUrl) throws IOException {
+        StoredObject object = getObjectInfo(gcsUrl);
+        try (ReadChannel reader = storage.reader(BlobId.of(gcpBucketName, getString(gcsUrl), object.getGeneration()))) {
+            reader.setChunkSize(RANGE_READ_CHUNK_SIZE);
+            return chunkedObjectStore.store(Channels.newInputStream(reader), object.getContentType());
+        }
+    }
+
+    public boolean isInternalUrl(String url) {
+        return url != null && url.startsWith("/files/");
+    }
+
+    /**
+     * Maps an internal "/files/..." URL onto the storage directory, rejecting paths that escape it.
+     */
+    public Path resolveInternalPath(String url) throws IOException {
+        Path root = Paths.get(internalStoragePath).toAbsolutePath().normalize();
+        Path path = root.resolve(url.substring("/files/".length())).normalize();
+        if (!path.startsWith(root)) {
+            throw new IOException("Invalid internal file path: " + url);
+        }
+        return path;
+    }
+
+    /**
+     * Deletes stored files with as few storage calls as possible: all GCS objects go out in one batch
+     * request, so callers should pass at most 100 URLs. Files that are already gone count as deleted.
+     * Returns the number of bytes freed. Dedup reference counting is up to the caller.
+     */
+    public long deleteStoredFiles(List<String> urls) throws IOException {
+        long reclaimed = 0;
+        List<BlobId> blobIds = new ArrayList<>();
+
+        for (String url : urls) {
+            if (url.startsWith(PUBLIC_URL_PREFIX)) {
+                // Public assets are stored by their https URL; delete them like any other object
+                url = "gs://" + url.substring(PUBLIC_URL_PREFIX.length());
+            }
+            if (isInternalUrl(url)) {
+                Path path = resolveInternalPath(url);
+                if (Files.isRegularFile(path)) {
+                    reclaimed += Files.size(path);
+                }
+                Files.deleteIfExists(path);
+            } else if (isChunkedUrl(url)) {
+                // Only the manifest goes; shared chunks are left for the orphan sweep
+                signedUrlCache.invalidate(gcpBucketName, chunkedObjectStore.materializedName(url));
+                chunkedObjectStore.delete(url);
+            } else if (url.startsWith("gs://")) {
+                String bucket = bucketOf(url);
+                if (!bucket.equals(gcpBucketName) && !bucket.equals(gcpPublicBucketName)) {
+                    System.err.println("Skipping deletion outside the configured buckets: " + url);
+                    continue;
+                }
+                String objectName = getString(url);
+                signedUrlCache.invalidate(bucket, objectName);
+                blobIds.add(BlobId.of(bucket, objectName));
+            } else {
+                System.err.println("Skipping deletion of unrecognised storage URL: " + url);
+            }
+        }
+
+        if (!blobIds.isEmpty()) {
+            for (Blob blob : storage.get(blobIds)) {
+                if (blob != null && blob.getSize() != null) {
+                    reclaimed += blob.getSize();
+                }
+            }
+            // A false result just means the object was already gone
+            storage.delete(blobIds);
         }
+        return reclaimed;
+    }
+
+    // updatedMillis and metageneration also move when an object's metadata is touched, e.g. when a stored
+    // chunk is reused. Generations are 0 for INTERNAL storage.
+    public record StoredFile(String url, long size, long updatedMillis, long generation, long metageneration) {
+    }
+
+    public record DeletionResult(int deleted, long reclaimedBytes) {
+    }
+
+    /**
+     * Deletes files found by {@link #listStoredFiles}, but only if they haven't changed since they were listed:
+     * GCS deletes carry generation and metageneration preconditions, so a chunk reused (and touched) in between
+     * survives. Pass at most 100 files; they go out in one batch request.
+     */
+    public DeletionResult deleteListedFiles(List<StoredFile> files) throws IOException {
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicLong reclaimed = new AtomicLong();
+        StorageBatch batch = null;
+
+        for (StoredFile file : files) {
+            if (isInternalUrl(file.url())) {
+                Path path = resolveInternalPath(file.url());
+                if (Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() == file.updatedMillis()
+                        && Files.deleteIfExists(path)) {
+                    deleted.incrementAndGet();
+                    reclaimed.addAndGet(file.size());
+                }
+                continue;
+            }
+
+            String bucket = bucketOf(file.url());
+            String objectName = getString(file.url());
+            if (batch == null) {
+                batch = storage.batch();
+            }
+            batch.delete(BlobId.of(bucket, objectName),
+                    Storage.BlobSourceOption.generationMatch(file.generation()),
+                    Storage.BlobSourceOption.metagenerationMatch(file.metageneration()))
+                    .notify(new BatchResult.Callback<>() {
+                        @Override
+                        public void success(Boolean result) {
+                            if (Boolean.TRUE.equals(result)) {
+                                signedUrlCache.invalidate(bucket, objectName);
+                                deleted.incrementAndGet();
+                                reclaimed.addAndGet(file.size());
+                            }
+                        }
+
+                        @Override
+                        public void error(StorageException e) {
+                            if (e.getCode() != 412) {
+                                System.err.println("Could not delete " + file.url() + ": " + e.getMessage());
+                            }
+                            // 412: changed since the listing, so it may be in use again; the next run looks at it afresh
+                        }
+                    });
+        }
+
+        if (batch != null) {
+            batch.submit();
+        }
+        return new DeletionResult(deleted.get(), reclaimed.get());
+    }
+
+    /**
+     * Streams every stored file in the private bucket (or the public one), fetching the GCS listing one
+     * page at a time so even a huge bucket is never held in memory. INTERNAL storage is walked on disk,
+     * skipping in-progress resumable uploads. Close the stream when done.
+     */
+    public Stream<StoredFile> listStoredFiles(boolean publicBucket) throws IOException {
+        if (isInternalStorage()) {
+            if (publicBucket) {
+                return Stream.empty();
+            }
+            Path root = Paths.get(internalStoragePath).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root)) {
+                return Stream.empty();
+            }
+            return Files.walk(root)
+                    .filter(Files::isRegularFile)
+                    .filter(path -> !root.relativize(path).startsWith(".uploads"))
+                    .map(path -> {
+                        try {
+                            String relative = root.relativize(path).toString().replace('\\', '/');
+                            return new StoredFile("/files/" + relative, Files.size(path),
+                                    Files.getLastModifiedTime(path).toMillis(), 0L, 0L);
+                        } catch (IOException e) {
+                            // Vanished while walking
+                            return null;
+                        }
+                    })
+                    .filter(Objects::nonNull);
+        }
+
+        String bucket = publicBucket ? gcpPublicBucketName : gcpBucketName;
+        Iterable<Blob> blobs = storage.list(bucket,
+                Storage.BlobListOption.pageSize(1000),
+                Storage.BlobListOption.fields(Storage.BlobField.NAME, Storage.BlobField.SIZE, Storage.BlobField.UPDATED,
+                        Storage.BlobField.GENERATION, Storage.BlobField.METAGENERATION))
+                .iterateAll();
+        return StreamSupport.stream(blobs.spliterator(), false)
+                .map(blob -> new StoredFile("gs://" + bucket + "/" + blob.getName(),
+                        blob.getSize() != null ? blob.getSize() : 0L,
+                        blob.getUpdateTimeOffsetDateTime() != null ? blob.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli() : 0L,
+                        blob.getGeneration() != null ? blob.getGeneration() : 0L,
+                        blob.getMetageneration() != null ? blob.getMetageneration() : 0L));
+    }
+
+    /**
+     * gs:// URLs of every object a chunked file is made of: its manifest, its materialized copy and its chunks.
+     */
+    public List<String> chunkedObjectUrls(String url) throws IOException {
+        ChunkManifest manifest = chunkedObjectStore.load(url);
+        String prefix = "gs://" + gcpBucketName + "/";
+        List<String> urls = new ArrayList<>(manifest.getChunks().size() + 2);
+        urls.add(prefix + url.substring((ChunkedObjectStore.URL_PREFIX + gcpBucketName + "/").length()));
+        urls.add(prefix + chunkedObjectStore.materializedName(url));
+        for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+            urls.add(prefix + ChunkedObjectStore.CHUNKS_PREFIX + chunk.sha256());
+        }
+        return urls;
+    }
+
+    private static String bucketOf(String gcsUrl) {
+        String pathWithoutProtocol = gcsUrl.substring(5);
+        int firstSlashIndex = pathWithoutProtocol.indexOf('/');
+        return firstSlashIndex == -1 ? pathWithoutProtocol : pathWithoutProtocol.substring(0, firstSlashIndex);
     }
 
     public String generateImageUploadUrl(String objectName, String type) {
@@ -422,6 +1111,87 @@ public class FileStorageService {
         }
     }
 
+    public static class StoredObject {
+        private final String url;
+        private final long size;
+        private final String contentType;
+        private final Long generation;
+        private final long lastModified;
+        private final String crc32c;
+
+        public StoredObject(String url, long size, String contentType, Long generation, long lastModified) {
+            this(url, size, contentType, generation, lastModified, null);
+        }
+
+        public StoredObject(String url, long size, String contentType, Long generation, long lastModified, String crc32c) {
+            this.url = url;
+            this.size = size;
+            this.contentType = contentType;
+            this.generation = generation;
+            this.lastModified = lastModified;
+            this.crc32c = crc32c;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Long getGeneration() {
+            return generation;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        // Base64 big-endian CRC32C as reported by GCS; null when unknown
+        public String getCrc32c() {
+            return crc32c;
+        }
+
+        /**
+         * Strong validator: the GCS generation changes on every overwrite; local files fall back to mtime and size.
+         */
+        public String getETag() {
+            if (generation != null) {
+                return "\"" + generation + "\"";
+            }
+            return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+        }
+    }
+
+    public static class ParallelUploadSession {
+        private final String uploadId;
+        private final String objectName;
+        private final List<String> partUrls;
+
+        public ParallelUploadSession(String uploadId, String objectName, List<String> partUrls) {
+            this.uploadId = uploadId;
+            this.objectName = objectName;
+            this.partUrls = partUrls;
+        }
+
+        public String getUploadId() {
+            return uploadId;
+        }
+
+        public String getObjectName() {
+            return objectName;
+        }
+
+        public List<String> getPartUrls() {
+            return partUrls;
+        }
+    }
+
     public static class FileUploadResult {
         private final String url;
         private final String originalFilename;
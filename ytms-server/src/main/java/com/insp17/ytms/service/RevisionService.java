@@ -8,8 +8,10 @@ import com.insp17.ytms.entity.VideoTask;
 import com.insp17.ytms.repository.CommentRepository;
 import com.insp17.ytms.repository.RevisionRepository;
 import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.media.MediaUploadedEvent;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -35,6 +37,12 @@ public class RevisionService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
     public Revision createRevision(RevisionRequest revisionRequest, User uploadedBy) throws IOException {
         VideoTask task = videoTaskRepository.findById(revisionRequest.getVideoTaskId())
                 .orElseThrow(() -> new RuntimeException("Task not found"));
@@ -60,6 +68,9 @@ public class RevisionService {
         // Send email notification
         emailService.sendRevisionUploadedEmail(task, nextRevisionNumber, uploadedBy);
 
+        eventPublisher.publishEvent(new MediaUploadedEvent(MediaUploadedEvent.Source.REVISION,
+                savedRevision.getId(), savedRevision.getEditedVideoUrl()));
+
         return savedRevision;
     }
 
@@ -89,12 +100,14 @@ public class RevisionService {
         Revision revision = revisionRepository.findById(revisionId)
                 .orElseThrow(() -> new RuntimeException("Revision not found with ID: " + revisionId));
 
-        try {
-            fileStorageService.deleteFileFromGCP(revision.getEditedVideoUrl());
-            System.out.println("File deleted from GCP.");
-        } catch (Exception e) {
-            System.err.println("Error deleting from GCP: " + e.getMessage());
+        storageDeletionService.enqueue(revision.getEditedVideoUrl());
+        if (revision.getProxy() != null) {
+            storageDeletionService.enqueue(revision.getProxy().getUrl());
+        }
+        if (revision.getScrubPreview() != null) {
+            revision.getScrubPreview().storedUrls().forEach(storageDeletionService::enqueue);
         }
+        System.out.println("Queued video file for deletion.");
 
         List<Comment> comments = commentRepository.findByRevisionId(revisionId);
 
@@ -0,0 +1,164 @@
+package com.insp17.ytms.service;
+
+import com.insp17.ytms.entity.StorageDeletion;
+import com.insp17.ytms.repository.AudioPeaksRepository;
+import com.insp17.ytms.repository.MediaSeekIndexRepository;
+import com.insp17.ytms.repository.StorageDeletionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable deletion of stored media. Callers enqueue URLs in the same transaction that removes the rows
+ * using them, so a crash or restart can't lose a delete. A scheduled worker drains the queue in batches of
+ * up to 100 (one GCS batch request each) and retries failures with exponential backoff. Deleting a file
+ * that is already gone succeeds, so replaying an entry is harmless.
+ */
+@Service
+public class StorageDeletionService {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_BATCHES_PER_RUN = 50;
+    private static final long LEASE_SECONDS = 300;
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+    private static final long MAX_BACKOFF_SECONDS = 3600;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ContentStoreService contentStoreService;
+
+    @Autowired
+    private MediaSeekIndexRepository mediaSeekIndexRepository;
+
+    @Autowired
+    private AudioPeaksRepository audioPeaksRepository;
+
+    @Value("${storage.deletion.enabled:true}")
+    private boolean enabled;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final Counter deletedFiles;
+    private final Counter reclaimedBytes;
+    private final Counter failedAttempts;
+
+    public StorageDeletionService(MeterRegistry meterRegistry) {
+        Gauge.builder("ytms.storage.deletion.queue", queueDepth, AtomicLong::get).register(meterRegistry);
+        this.deletedFiles = Counter.builder("ytms.storage.deletion.deleted").register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("ytms.storage.deletion.reclaimed.bytes").register(meterRegistry);
+        this.failedAttempts = Counter.builder("ytms.storage.deletion.failures").register(meterRegistry);
+    }
+
+    /**
+     * Queues a stored file for deletion. Joins the caller's transaction, so the delete only happens if
+     * the row removal commits.
+     */
+    public void enqueue(String url) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        storageDeletionRepository.save(new StorageDeletion(url));
+    }
+
+    @Scheduled(fixedDelayString = "${storage.deletion.poll-interval-ms:10000}")
+    public void drain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                if (processBatch() < BATCH_SIZE) {
+                    break;
+                }
+            }
+            queueDepth.set(storageDeletionRepository.count());
+        } catch (Exception e) {
+            System.err.println("Storage deletion run failed: " + e.getMessage());
+        }
+    }
+
+    // Returns how many entries were claimed
+    private int processBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> dueIds = storageDeletionRepository.findDueIds(now, PageRequest.of(0, BATCH_SIZE));
+        if (dueIds.isEmpty()) {
+            return 0;
+        }
+
+        String token = UUID.randomUUID().toString();
+        storageDeletionRepository.claim(dueIds, token, now.plusSeconds(LEASE_SECONDS), now);
+        List<StorageDeletion> claimed = storageDeletionRepository.findByClaimToken(token);
+
+        List<Long> done = new ArrayList<>();
+        List<StorageDeletion> toDelete = new ArrayList<>();
+        for (StorageDeletion entry : claimed) {
+            try {
+                if (!entry.isReleased()) {
+                    if (!contentStoreService.release(entry)) {
+                        // Deduplicated object still used by another row; the entry is already gone
+                        continue;
+                    }
+                    // Keeps a later reschedule from saving the entry back as unreleased
+                    entry.setReleased(true);
+                }
+                toDelete.add(entry);
+            } catch (Exception e) {
+                reschedule(entry, e);
+            }
+        }
+
+        if (!toDelete.isEmpty()) {
+            try {
+                List<String> urls = toDelete.stream().map(StorageDeletion::getUrl).toList();
+                long reclaimed = fileStorageService.deleteStoredFiles(urls);
+                mediaSeekIndexRepository.deleteByUrls(urls);
+                audioPeaksRepository.deleteByUrls(urls);
+                reclaimedBytes.increment(reclaimed);
+                deletedFiles.increment(toDelete.size());
+                toDelete.forEach(entry -> done.add(entry.getId()));
+                System.out.println("Deleted " + toDelete.size() + " stored files, reclaimed " + reclaimed + " bytes");
+            } catch (Exception e) {
+                System.err.println("Batch deletion of " + toDelete.size() + " stored files failed: " + e.getMessage());
+                toDelete.forEach(entry -> reschedule(entry, e));
+            }
+        }
+
+        if (!done.isEmpty()) {
+            storageDeletionRepository.deleteByIds(done);
+        }
+        return claimed.size();
+    }
+
+    private void reschedule(StorageDeletion entry, Exception cause) {
+        failedAttempts.increment();
+        int attempts = entry.getAttempts() + 1;
+        long backoff = Math.min(MAX_BACKOFF_SECONDS, INITIAL_BACKOFF_SECONDS << Math.min(attempts - 1, 20));
+
+        entry.setAttempts(attempts);
+        entry.setClaimToken(null);
+        entry.setNextAttemptAt(LocalDateTime.now().plusSeconds(backoff));
+        String message = String.valueOf(cause.getMessage());
+        entry.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+        try {
+            storageDeletionRepository.save(entry);
+        } catch (Exception e) {
+            // The claim lease expires on its own and the entry is picked up again
+            System.err.println("Could not reschedule deletion of " + entry.getUrl() + ": " + e.getMessage());
+        }
+    }
+}
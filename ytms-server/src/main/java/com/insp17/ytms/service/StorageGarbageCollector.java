@@ -0,0 +1,265 @@
+package com.insp17.ytms.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.insp17.ytms.repository.AudioInstructionRepository;
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.repository.StorageDeletionRepository;
+import com.insp17.ytms.repository.StoredBlobRepository;
+import com.insp17.ytms.repository.VideoMetadataRepository;
+import com.insp17.ytms.repository.VideoTaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Finds stored files that no row references any more (signed-URL uploads never attached to a task,
+ * failed deletes, abandoned composite parts, unreferenced CDC chunks) and deletes them in batches.
+ * <p>
+ * Every referenced URL goes into a Bloom filter, then the bucket listing is streamed page by page and
+ * checked against it. A Bloom filter never reports a referenced file as missing, so a false positive can
+ * only keep some garbage alive for another run, never delete live media. Files touched within the grace
+ * period are skipped so uploads that are about to be attached survive.
+ */
+@Service
+public class StorageGarbageCollector {
+
+    private static final int DELETE_BATCH_SIZE = 100;
+    private static final int REPORT_SAMPLE_SIZE = 100;
+    private static final String PUBLIC_URL_PREFIX = "https://storage.googleapis.com/";
+
+    @Value("${storage.gc.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.gc.dry-run:true}")
+    private boolean scheduledDryRun;
+
+    @Value("${storage.gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${storage.gc.include-public-bucket:false}")
+    private boolean includePublicBucket;
+
+    @Value("${storage.gc.expected-objects:1000000}")
+    private long expectedObjects;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private VideoTaskRepository videoTaskRepository;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private AudioInstructionRepository audioInstructionRepository;
+
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private StorageDeletionRepository storageDeletionRepository;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Counter deletedFiles;
+    private final Counter reclaimedBytes;
+
+    public StorageGarbageCollector(MeterRegistry meterRegistry) {
+        this.deletedFiles = Counter.builder("ytms.storage.gc.deleted").register(meterRegistry);
+        this.reclaimedBytes = Counter.builder("ytms.storage.gc.reclaimed.bytes").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${storage.gc.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            collect(scheduledDryRun);
+        } catch (Exception e) {
+            System.err.println("Storage GC run failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one sweep. With {@code dryRun} nothing is deleted and the report lists what would be.
+     */
+    public Report collect(boolean dryRun) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A storage GC run is already in progress");
+        }
+        try {
+            Report report = new Report(dryRun);
+            BloomFilter<CharSequence> referenced = buildReferenceFilter(report);
+            long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(graceHours);
+
+            try (Stream<FileStorageService.StoredFile> files = fileStorageService.listStoredFiles(false)) {
+                sweep(files.iterator(), referenced, cutoff, report);
+            }
+            if (includePublicBucket) {
+                try (Stream<FileStorageService.StoredFile> files = fileStorageService.listStoredFiles(true)) {
+                    sweep(files.iterator(), referenced, cutoff, report);
+                }
+            }
+
+            report.finish();
+            System.out.println("Storage GC " + (dryRun ? "dry run" : "run") + ": scanned " + report.getScanned()
+                    + ", unreferenced " + report.getUnreferenced() + " (" + report.getUnreferencedBytes() + " bytes), deleted "
+                    + report.getDeleted() + " in " + report.getDurationMillis() + " ms");
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private BloomFilter<CharSequence> buildReferenceFilter(Report report) throws IOException {
+        BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                expectedObjects, 0.001);
+
+        List<String> urls = new ArrayList<>();
+        urls.addAll(videoTaskRepository.findAllRawVideoUrls());
+        urls.addAll(revisionRepository.findAllEditedVideoUrls());
+        urls.addAll(videoTaskRepository.findAllRawVideoProxyUrls());
+        urls.addAll(revisionRepository.findAllProxyUrls());
+        revisionRepository.findAllScrubPreviews().forEach(preview -> urls.addAll(preview.storedUrls()));
+        urls.addAll(audioInstructionRepository.findAllAudioUrls());
+        urls.addAll(videoMetadataRepository.findAllThumbnailUrls());
+        videoMetadataRepository.findAllThumbnailVariants().forEach(variants -> urls.addAll(variants.storedUrls()));
+        urls.addAll(storedBlobRepository.findAllUrls());
+        // Already queued for deletion; the outbox worker owns those
+        urls.addAll(storageDeletionRepository.findAllUrls());
+
+        for (String url : urls) {
+            if (fileStorageService.isChunkedUrl(url)) {
+                // A manifest that can't be read aborts the run: its chunks would otherwise look unreferenced
+                for (String part : fileStorageService.chunkedObjectUrls(url)) {
+                    filter.put(part);
+                    report.referenced++;
+                }
+            } else {
+                filter.put(normalize(url));
+                report.referenced++;
+            }
+        }
+        return filter;
+    }
+
+    private void sweep(Iterator<FileStorageService.StoredFile> files, BloomFilter<CharSequence> referenced,
+                       long cutoff, Report report) throws IOException {
+        List<FileStorageService.StoredFile> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+        while (files.hasNext()) {
+            FileStorageService.StoredFile file = files.next();
+            report.scanned++;
+            if (file.updatedMillis() > cutoff || referenced.mightContain(file.url())) {
+                continue;
+            }
+
+            report.unreferenced++;
+            report.unreferencedBytes += file.size();
+            if (report.samples.size() < REPORT_SAMPLE_SIZE) {
+                report.samples.add(file.url());
+            }
+            batch.add(file);
+            if (batch.size() == DELETE_BATCH_SIZE) {
+                flush(batch, report);
+            }
+        }
+        flush(batch, report);
+    }
+
+    private void flush(List<FileStorageService.StoredFile> batch, Report report) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!report.isDryRun()) {
+            // Files changed since the listing (a chunk reused for a new revision) are kept
+            FileStorageService.DeletionResult result = fileStorageService.deleteListedFiles(batch);
+            report.deleted += result.deleted();
+            deletedFiles.increment(result.deleted());
+            reclaimedBytes.increment(result.reclaimedBytes());
+        }
+        batch.clear();
+    }
+
+    // Thumbnails are stored as public https URLs; the listing reports gs:// URLs
+    private static String normalize(String url) {
+        if (url.startsWith(PUBLIC_URL_PREFIX)) {
+            return "gs://" + url.substring(PUBLIC_URL_PREFIX.length());
+        }
+        return url;
+    }
+
+    public static class Report {
+        private final boolean dryRun;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startedNanos = System.nanoTime();
+        private long durationMillis;
+        private long referenced;
+        private long scanned;
+        private long unreferenced;
+        private long unreferencedBytes;
+        private long deleted;
+        private final List<String> samples = new ArrayList<>();
+
+        public Report(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        private void finish() {
+            durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        }
+
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public long getReferenced() {
+            return referenced;
+        }
+
+        public long getScanned() {
+            return scanned;
+        }
+
+        public long getUnreferenced() {
+            return unreferenced;
+        }
+
+        public long getUnreferencedBytes() {
+            return unreferencedBytes;
+        }
+
+        public long getDeleted() {
+            return deleted;
+        }
+
+        public List<String> getSamples() {
+            return samples;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.insp17.ytms.service;
+
+import com.insp17.ytms.dtos.MediaUrlDTO;
+import com.insp17.ytms.dtos.TaskMediaUrlsDTO;
+import com.insp17.ytms.entity.AudioInstruction;
+import com.insp17.ytms.entity.MediaObjectInfo;
+import com.insp17.ytms.entity.ProxyRendition;
+import com.insp17.ytms.entity.Revision;
+import com.insp17.ytms.entity.VideoTask;
+import com.insp17.ytms.repository.AudioInstructionRepository;
+import com.insp17.ytms.service.storage.SignedUrlCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves every media object of a task (raw video, revisions, audio instructions) in one pass,
+ * so opening a task costs one request instead of one per file.
+ */
+@Service
+public class TaskMediaService {
+
+    @Autowired
+    private VideoTaskService videoTaskService;
+
+    @Autowired
+    private RevisionService revisionService;
+
+    @Autowired
+    private AudioInstructionRepository audioInstructionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private SignedUrlCache signedUrlCache;
+
+    @Autowired
+    @Qualifier("mediaUrlTaskExecutor")
+    private Executor mediaUrlTaskExecutor;
+
+    /**
+     * Callers are expected to have checked access to the task already.
+     */
+    public TaskMediaUrlsDTO getTaskMediaUrls(Long taskId) {
+        VideoTask task = videoTaskService.getTaskById(taskId);
+
+        // Entities are read on this thread; only storage calls run on the executor.
+        CompletableFuture<MediaUrlDTO> rawVideo = task.getRawVideoUrl() == null
+                ? CompletableFuture.completedFuture(null)
+                : resolveVideo(task.getId(), task.getRawVideoUrl(), task.getRawVideoFilename(), task.getRawVideoInfo(),
+                task.getRawVideoProxy(), "/api/files/video/" + task.getId());
+
+        List<CompletableFuture<MediaUrlDTO>> revisions = new ArrayList<>();
+        for (Revision revision : revisionService.getRevisionsByTask(taskId)) {
+            if (revision.getEditedVideoUrl() != null) {
+                revisions.add(resolveVideo(revision.getId(), revision.getEditedVideoUrl(), revision.getEditedVideoFilename(),
+                        revision.getMediaInfo(), revision.getProxy(), "/api/files/revision/" + revision.getId()));
+            }
+        }
+
+        List<CompletableFuture<MediaUrlDTO>> audioInstructions = new ArrayList<>();
+        for (AudioInstruction audio : audioInstructionRepository.findByVideoTaskIdOrderByCreatedAtAsc(taskId)) {
+            if (audio.getAudioUrl() != null) {
+                audioInstructions.add(resolve(audio.getId(), audio.getAudioUrl(), audio.getAudioFilename(), audio.getMediaInfo(),
+                        "/api/files/audio/" + audio.getId()));
+            }
+        }
+
+        return new TaskMediaUrlsDTO(
+                taskId,
+                rawVideo.join(),
+                revisions.stream().map(CompletableFuture::join).toList(),
+                audioInstructions.stream().map(CompletableFuture::join).toList(),
+                TimeUnit.MILLISECONDS.toSeconds(signedUrlCache.getMinRemainingMillis()));
+    }
+
+    // Videos with a proxy hand out the proxy by default; the original stays reachable through originalStreamUrl
+    private CompletableFuture<MediaUrlDTO> resolveVideo(Long id, String storedUrl, String filename, MediaObjectInfo recorded,
+                                                        ProxyRendition proxy, String streamUrl) {
+        if (proxy == null || !proxy.isFor(storedUrl)) {
+            return resolve(id, storedUrl, filename, recorded, streamUrl);
+        }
+        return resolve(id, proxy.getUrl(), filename, null, streamUrl).thenApply(dto -> {
+            dto.setOriginalStreamUrl(streamUrl + "?quality=original");
+            return dto;
+        });
+    }
+
+    private CompletableFuture<MediaUrlDTO> resolve(Long id, String storedUrl, String filename, MediaObjectInfo recorded,
+                                                   String streamUrl) {
+        return CompletableFuture.supplyAsync(() -> {
+            MediaUrlDTO dto = new MediaUrlDTO(id, filename, null, streamUrl, null, null);
+            try {
+                // Local and chunked files have no signed URL; clients use the streaming endpoint instead.
+                if (!fileStorageService.isInternalUrl(storedUrl) && !fileStorageService.isChunkedUrl(storedUrl)) {
+                    dto.setUrl(fileStorageService.getSignedUrlToDownload(storedUrl));
+                }
+                FileStorageService.StoredObject object = fileStorageService.getObjectInfo(storedUrl, recorded);
+                dto.setSize(object.getSize());
+                dto.setContentType(object.getContentType());
+            } catch (Exception e) {
+                System.err.println("Could not resolve media " + storedUrl + ": " + e.getMessage());
+            }
+            return dto;
+        }, mediaUrlTaskExecutor);
+    }
+}
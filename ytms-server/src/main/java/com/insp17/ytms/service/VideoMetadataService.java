@@ -2,18 +2,22 @@ package com.insp17.ytms.service;
 
 import com.insp17.ytms.dtos.VideoMetadataDTO;
 import com.insp17.ytms.dtos.VideoMetadataResponseDTO;
+import com.insp17.ytms.entity.ThumbnailVariants;
 import com.insp17.ytms.entity.VideoChapter;
 import com.insp17.ytms.entity.VideoMetadata;
 import com.insp17.ytms.entity.VideoTask;
 import com.insp17.ytms.repository.VideoMetadataRepository;
 import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.media.ThumbnailUploadedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -25,6 +29,8 @@ public class VideoMetadataService {
 
     private final VideoMetadataRepository videoMetadataRepository;
     private final VideoTaskRepository videoTaskRepository;
+    private final StorageDeletionService storageDeletionService;
+    private final ApplicationEventPublisher eventPublisher;
     // NOTE: chapterRepository is no longer needed here due to cascading saves.
 
     @Transactional
@@ -43,11 +49,20 @@ public class VideoMetadataService {
                 });
 
         log.info("Updating video metadata for task ID: {}", taskId);
+        String previousThumbnailUrl = metadata.getThumbnailUrl();
         updateEntityFromDTO(metadata, metadataDTO);
+        boolean thumbnailChanged = !Objects.equals(previousThumbnailUrl, metadata.getThumbnailUrl());
+        if (thumbnailChanged && metadata.getThumbnailVariants() != null) {
+            metadata.getThumbnailVariants().storedUrls().forEach(storageDeletionService::enqueue);
+            metadata.setThumbnailVariants(null);
+        }
 
         VideoMetadata savedMetadata = videoMetadataRepository.save(metadata);
         videoTask.setUpdatedAt(LocalDateTime.now());
         videoTaskRepository.save(videoTask);
+        if (thumbnailChanged && savedMetadata.getThumbnailUrl() != null && !savedMetadata.getThumbnailUrl().isBlank()) {
+            eventPublisher.publishEvent(new ThumbnailUploadedEvent(savedMetadata.getId(), savedMetadata.getThumbnailUrl()));
+        }
         return convertToResponseDTO(savedMetadata);
     }
 
@@ -64,8 +79,10 @@ public class VideoMetadataService {
     @Transactional
     public void deleteVideoMetadata(Long taskId) {
         log.info("Deleting video metadata for task ID: {}", taskId);
-        if (!videoMetadataRepository.existsByVideoTaskId(taskId)) {
-            throw new RuntimeException("Video metadata not found for task ID: " + taskId);
+        VideoMetadata metadata = videoMetadataRepository.findByVideoTaskId(taskId)
+                .orElseThrow(() -> new RuntimeException("Video metadata not found for task ID: " + taskId));
+        if (metadata.getThumbnailVariants() != null) {
+            metadata.getThumbnailVariants().storedUrls().forEach(storageDeletionService::enqueue);
         }
         videoMetadataRepository.deleteByVideoTaskId(taskId);
         log.info("Successfully deleted video metadata for task ID: {}", taskId);
@@ -125,6 +142,11 @@ public class VideoMetadataService {
             dto.setTags(metadata.getTags());
         }
         dto.setThumbnailUrl(metadata.getThumbnailUrl());
+        ThumbnailVariants variants = metadata.getThumbnailVariants();
+        if (variants != null && variants.isFor(metadata.getThumbnailUrl())) {
+            dto.setThumbnailSrcset(variants.getSrcset());
+            dto.setThumbnailVariants(variants.variants());
+        }
         dto.setCategory(metadata.getCategory());
         dto.setLanguage(metadata.getLanguage());
         dto.setPrivacyStatus(metadata.getPrivacyStatus());
@@ -4,8 +4,10 @@ import com.insp17.ytms.dtos.AudioInstructionDTO;
 import com.insp17.ytms.dtos.TaskUpdateRequest;
 import com.insp17.ytms.entity.*;
 import com.insp17.ytms.repository.*;
+import com.insp17.ytms.service.media.MediaUploadedEvent;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -43,6 +45,12 @@ public class VideoTaskService {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
     public List<VideoTask> getAllTasks() {
         return videoTaskRepository.findAll();
     }
@@ -71,7 +79,12 @@ public class VideoTaskService {
     public VideoTask createTask(VideoTask task) {
         // This method is now corrected to only accept the task object.
         // File handling is done via direct upload before this is called.
-        return videoTaskRepository.save(task);
+        VideoTask savedTask = videoTaskRepository.save(task);
+        if (savedTask.getRawVideoUrl() != null) {
+            eventPublisher.publishEvent(new MediaUploadedEvent(MediaUploadedEvent.Source.RAW_VIDEO,
+                    savedTask.getId(), savedTask.getRawVideoUrl()));
+        }
+        return savedTask;
     }
 
     public VideoTask assignEditor(Long taskId, Long editorId, User assignedBy) {
@@ -226,7 +239,10 @@ public class VideoTaskService {
         audioInstruction.setDescription(audioInstructionDTO.getDescription());
         audioInstruction.setAudioFilename(audioInstruction.getAudioFilename());
 
-        return audioInstructionRepository.save(audioInstruction);
+        AudioInstruction savedInstruction = audioInstructionRepository.save(audioInstruction);
+        eventPublisher.publishEvent(new MediaUploadedEvent(MediaUploadedEvent.Source.AUDIO_INSTRUCTION,
+                savedInstruction.getId(), savedInstruction.getAudioUrl()));
+        return savedInstruction;
     }
 
     public List<AudioInstruction> getAudioInstructions(Long taskId) {
@@ -269,9 +285,21 @@ public class VideoTaskService {
 
         VideoTask videoTask = videoTaskRepository.findById(id).orElseThrow(() -> new RuntimeException("Video not found"));
 
-        fileStorageService.deleteFileFromGCP(videoTask.getRawVideoUrl());
-        videoTask.getRevisions().forEach(e -> fileStorageService.deleteFileFromGCP(e.getEditedVideoUrl()));
-        videoTask.getAudioInstructions().forEach(e -> fileStorageService.deleteFileFromGCP(e.getAudioUrl()));
+        storageDeletionService.enqueue(videoTask.getRawVideoUrl());
+        if (videoTask.getRawVideoProxy() != null) {
+            storageDeletionService.enqueue(videoTask.getRawVideoProxy().getUrl());
+        }
+        videoTask.getRevisions().forEach(e -> storageDeletionService.enqueue(e.getEditedVideoUrl()));
+        videoTask.getRevisions().stream()
+                .filter(e -> e.getProxy() != null)
+                .forEach(e -> storageDeletionService.enqueue(e.getProxy().getUrl()));
+        videoTask.getRevisions().stream()
+                .filter(e -> e.getScrubPreview() != null)
+                .forEach(e -> e.getScrubPreview().storedUrls().forEach(storageDeletionService::enqueue));
+        videoTask.getAudioInstructions().forEach(e -> storageDeletionService.enqueue(e.getAudioUrl()));
+        if (videoTask.getVideoMetadata() != null && videoTask.getVideoMetadata().getThumbnailVariants() != null) {
+            videoTask.getVideoMetadata().getThumbnailVariants().storedUrls().forEach(storageDeletionService::enqueue);
+        }
 
         videoTaskRepository.deleteById(id);
     }
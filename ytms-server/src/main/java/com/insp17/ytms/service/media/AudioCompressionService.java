@@ -0,0 +1,229 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.AudioInstruction;
+import com.insp17.ytms.entity.AudioPeaks;
+import com.insp17.ytms.repository.AudioInstructionRepository;
+import com.insp17.ytms.repository.AudioPeaksRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import com.insp17.ytms.service.media.audio.FlacEncoder;
+import com.insp17.ytms.service.media.audio.WavReader;
+import com.insp17.ytms.service.media.audio.WaveformPeaks;
+import com.insp17.ytms.service.storage.UploadProgressListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Re-encodes WAV audio instructions as FLAC (media.audio.flac.enabled). Voice notes recorded as WAV are
+ * several times larger than they need to be; FLAC is lossless, so the swap is invisible to listeners. The
+ * WAV is streamed through a pure-Java encoder into a temporary file, uploaded next to the original, and the
+ * row switched over only if it still points at the WAV. Waveform peaks are computed in the same pass, since
+ * {@link AudioPeaksService} can't decode FLAC and leaves files this job will convert to it.
+ */
+@Service
+public class AudioCompressionService {
+
+    private static final int FRAMES_PER_READ = 8192;
+    // WAV headers are small; a file whose data chunk starts later than this is left alone
+    private static final long HEADER_BYTES = 64 * 1024;
+
+    @Value("${media.audio.flac.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.peaks.enabled:true}")
+    private boolean peaksEnabled;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private AudioInstructionRepository audioInstructionRepository;
+
+    @Autowired
+    private AudioPeaksRepository audioPeaksRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * True if compression is enabled and the file at {@code url} is a WAV this job would re-encode.
+     */
+    public boolean willCompress(String url) {
+        if (!enabled || !isSupportedUrl(url)) {
+            return false;
+        }
+        try {
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+            try (InputStream inputStream = fileStorageService.openRange(object, 0, Math.min(object.getSize(), HEADER_BYTES))) {
+                return isEncodable(openWav(inputStream));
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() != MediaUploadedEvent.Source.AUDIO_INSTRUCTION || event.isRewriteSkipped()
+                || !isSupportedUrl(event.getUrl())) {
+            return;
+        }
+        String url = event.getUrl();
+
+        Path output = null;
+        boolean awaited = false;
+        boolean handled = false;
+        try {
+            long started = System.currentTimeMillis();
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+            output = Files.createTempFile("ytms-flac-", ".flac");
+
+            WaveformPeaks peaks = peaksEnabled ? new WaveformPeaks() : null;
+            int sampleRate;
+            long flacSize;
+            try (InputStream inputStream = new BufferedInputStream(fileStorageService.openRange(object, 0, object.getSize()), 64 * 1024);
+                 FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                WavReader reader = openWav(inputStream);
+                if (!isEncodable(reader)) {
+                    return;
+                }
+                awaited = true;
+                sampleRate = reader.getSampleRate();
+                flacSize = encode(reader, new FlacEncoder(channel, sampleRate, reader.getChannels(), reader.getBitsPerSample()), peaks);
+            }
+
+            String storedUrl = url;
+            if (flacSize >= object.getSize()) {
+                // Noise doesn't compress; keep the WAV
+                System.out.println("FLAC copy of audio " + event.getId() + " is no smaller (" + flacSize + " bytes), keeping the WAV");
+            } else {
+                String filename = flacFilename(audioFilename(event.getId(), url));
+                FileStorageService.FileUploadResult result;
+                try (InputStream inputStream = Files.newInputStream(output)) {
+                    result = fileStorageService.uploadStream(inputStream, filename, "audio/flac",
+                            Mp4FaststartService.folderOf(url), UploadProgressListener.NONE);
+                }
+
+                if (audioInstructionRepository.swapAudioUrl(event.getId(), url, result.getUrl(), filename) == 0) {
+                    // The instruction was deleted or replaced while we were encoding it
+                    storageDeletionService.enqueue(result.getUrl());
+                    System.out.println("Audio " + event.getId() + " changed during FLAC encoding, discarded " + result.getUrl());
+                    return;
+                }
+                // From here on the row points at the FLAC, so that is what gets republished
+                url = result.getUrl();
+                storageDeletionService.enqueue(event.getUrl());
+                storedUrl = result.getUrl();
+                System.out.println("Compressed audio " + event.getId() + " to FLAC: " + object.getSize() + " -> " + flacSize
+                        + " bytes in " + (System.currentTimeMillis() - started) + " ms");
+            }
+
+            if (peaks != null) {
+                savePeaks(storedUrl, sampleRate, peaks);
+            }
+            handled = true;
+            if (!storedUrl.equals(event.getUrl())) {
+                eventPublisher.publishEvent(new MediaUploadedEvent(event.getSource(), event.getId(), storedUrl));
+            }
+        } catch (Exception e) {
+            // The WAV stays in place and plays as before
+            System.err.println("FLAC compression failed for audio " + event.getId() + ": " + e.getMessage());
+        } finally {
+            deleteQuietly(output);
+            if (awaited && !handled) {
+                // Peaks skipped this file expecting them from our pass; republish whatever the row points at
+                eventPublisher.publishEvent(url.equals(event.getUrl())
+                        ? MediaUploadedEvent.rewriteSkipped(event.getSource(), event.getId(), url)
+                        : new MediaUploadedEvent(event.getSource(), event.getId(), url));
+            }
+        }
+    }
+
+    private long encode(WavReader reader, FlacEncoder encoder, WaveformPeaks peaks) throws IOException {
+        int channels = reader.getChannels();
+        int[] samples = new int[FRAMES_PER_READ * channels];
+        float[] normalized = peaks != null ? new float[samples.length] : null;
+        float scale = 1f / (1L << (reader.getBitsPerSample() - 1));
+        int frames;
+        while ((frames = reader.read(samples)) > 0) {
+            encoder.write(samples, frames);
+            if (peaks != null) {
+                for (int i = 0; i < frames * channels; i++) {
+                    normalized[i] = samples[i] * scale;
+                }
+                peaks.add(normalized, frames, channels);
+            }
+        }
+        return encoder.finish();
+    }
+
+    private void savePeaks(String url, int sampleRate, WaveformPeaks peaks) {
+        if (audioPeaksRepository.existsByUrl(url)) {
+            return;
+        }
+        byte[] data = WaveformPeaks.encode(peaks.finish());
+        long durationMs = peaks.getTotalFrames() * 1000 / sampleRate;
+        try {
+            audioPeaksRepository.save(new AudioPeaks(url, sampleRate, durationMs, data));
+        } catch (DataIntegrityViolationException e) {
+            // Another job stored peaks for the same file first
+        }
+    }
+
+    // Returns null if the file isn't a WAV
+    private static WavReader openWav(InputStream inputStream) {
+        try {
+            return new WavReader(inputStream);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean isEncodable(WavReader reader) {
+        return reader != null && !reader.isFloatingPoint()
+                && FlacEncoder.isSupported(reader.getSampleRate(), reader.getChannels(), reader.getBitsPerSample());
+    }
+
+    private String audioFilename(Long id, String url) {
+        return audioInstructionRepository.findById(id)
+                .map(AudioInstruction::getAudioFilename)
+                .orElse(url.substring(url.lastIndexOf('/') + 1));
+    }
+
+    private boolean isSupportedUrl(String url) {
+        return url != null && (url.startsWith("gs://") || fileStorageService.isInternalUrl(url));
+    }
+
+    private static String flacFilename(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".flac";
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete temporary file " + path + ": " + e.getMessage());
+        }
+    }
+}
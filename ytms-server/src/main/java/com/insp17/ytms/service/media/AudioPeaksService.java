@@ -0,0 +1,168 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.AudioPeaks;
+import com.insp17.ytms.repository.AudioPeaksRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.media.audio.WavReader;
+import com.insp17.ytms.service.media.audio.WaveformPeaks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Precomputes waveform peaks for audio instructions (media.peaks.enabled) so the client can draw a
+ * waveform without downloading the recording. The file is decoded in one streaming pass: WAV with our own
+ * reader, AIFF/AU through javax.sound. Formats without a pure-Java decoder (MP3, AAC, Ogg) are skipped.
+ */
+@Service
+public class AudioPeaksService {
+
+    private static final int FRAMES_PER_READ = 8192;
+
+    @Value("${media.peaks.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private AudioPeaksRepository audioPeaksRepository;
+
+    @Autowired
+    private AudioCompressionService audioCompressionService;
+
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() != MediaUploadedEvent.Source.AUDIO_INSTRUCTION || event.getUrl() == null) {
+            return;
+        }
+        String url = event.getUrl();
+        // Dedup and republished events can point several rows at one file; it is decoded once
+        if (audioPeaksRepository.existsByUrl(url)) {
+            return;
+        }
+        // The FLAC job computes peaks in its own pass over the WAV; FLAC itself isn't decodable here
+        if (!event.isRewriteSkipped() && audioCompressionService.willCompress(url)) {
+            return;
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+            AudioPeaks peaks;
+            try (BufferedInputStream inputStream = new BufferedInputStream(fileStorageService.openRange(object, 0, object.getSize()), 64 * 1024)) {
+                peaks = compute(url, inputStream);
+            }
+            if (peaks == null) {
+                System.out.println("No pure-Java decoder for " + url + ", skipping waveform peaks");
+                return;
+            }
+
+            try {
+                audioPeaksRepository.save(peaks);
+            } catch (DataIntegrityViolationException e) {
+                // Another job stored peaks for the same file first
+                return;
+            }
+            System.out.println("Computed waveform peaks for audio " + event.getId() + ": " + peaks.getDurationMs() + " ms, "
+                    + peaks.getData().length + " bytes in " + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // The client can still draw a waveform itself from the full file
+            System.err.println("Failed to compute waveform peaks for audio " + event.getId() + ": " + e.getMessage());
+        }
+    }
+
+    public Optional<AudioPeaks> findPeaks(String url) {
+        return audioPeaksRepository.findByUrl(url);
+    }
+
+    // Returns null if the format can't be decoded in pure Java
+    private AudioPeaks compute(String url, BufferedInputStream inputStream) throws IOException {
+        inputStream.mark(16);
+        byte[] magic = inputStream.readNBytes(4);
+        inputStream.reset();
+
+        WaveformPeaks peaks = new WaveformPeaks();
+        int sampleRate;
+        if ("RIFF".equals(new String(magic, StandardCharsets.US_ASCII))) {
+            WavReader reader = new WavReader(inputStream);
+            sampleRate = reader.getSampleRate();
+            float[] samples = new float[FRAMES_PER_READ * reader.getChannels()];
+            int frames;
+            while ((frames = reader.readNormalized(samples)) > 0) {
+                peaks.add(samples, frames, reader.getChannels());
+            }
+        } else {
+            AudioInputStream audio;
+            try {
+                audio = AudioSystem.getAudioInputStream(inputStream);
+            } catch (UnsupportedAudioFileException e) {
+                return null;
+            }
+            try (AudioInputStream pcm = toPcm16(audio)) {
+                sampleRate = (int) pcm.getFormat().getSampleRate();
+                int channels = pcm.getFormat().getChannels();
+                ByteOrder order = pcm.getFormat().isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+                byte[] bytes = new byte[FRAMES_PER_READ * channels * 2];
+                float[] samples = new float[FRAMES_PER_READ * channels];
+                int n;
+                while ((n = pcm.readNBytes(bytes, 0, bytes.length)) > 0) {
+                    int frames = n / (channels * 2);
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, frames * channels * 2).order(order);
+                    for (int i = 0; i < frames * channels; i++) {
+                        samples[i] = buffer.getShort() / 32768f;
+                    }
+                    peaks.add(samples, frames, channels);
+                }
+            }
+        }
+
+        byte[] data = WaveformPeaks.encode(peaks.finish());
+        long durationMs = sampleRate > 0 ? peaks.getTotalFrames() * 1000 / sampleRate : 0;
+        return new AudioPeaks(url, sampleRate, durationMs, data);
+    }
+
+    private static AudioInputStream toPcm16(AudioInputStream audio) {
+        AudioFormat source = audio.getFormat();
+        if (source.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && source.getSampleSizeInBits() == 16) {
+            return audio;
+        }
+        AudioFormat target = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, source.getSampleRate(), 16,
+                source.getChannels(), source.getChannels() * 2, source.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(target, audio);
+    }
+
+    /**
+     * The level closest to {@code samplesPerPeak}, or the finest one that fits {@code maxPeaks} pairs.
+     */
+    public static WaveformPeaks.Level selectLevel(AudioPeaks peaks, Integer samplesPerPeak, int maxPeaks) {
+        WaveformPeaks.Level[] levels = WaveformPeaks.decode(peaks.getData()).toArray(WaveformPeaks.Level[]::new);
+        if (samplesPerPeak != null) {
+            return Arrays.stream(levels)
+                    .min((a, b) -> Integer.compare(Math.abs(a.samplesPerPeak() - samplesPerPeak), Math.abs(b.samplesPerPeak() - samplesPerPeak)))
+                    .orElseThrow();
+        }
+        for (WaveformPeaks.Level level : levels) {
+            if (level.length() <= maxPeaks) {
+                return level;
+            }
+        }
+        return levels[levels.length - 1];
+    }
+}
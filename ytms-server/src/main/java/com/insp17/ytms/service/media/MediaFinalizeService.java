@@ -0,0 +1,105 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.repository.AudioInstructionRepository;
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.FileStorageService;
+import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.zip.CRC32C;
+
+/**
+ * Records size, sniffed MIME type, generation and CRC32C on the media row once an upload is saved, so
+ * streaming can answer from the database instead of asking storage on every request.
+ */
+@Service
+public class MediaFinalizeService {
+
+    private static final int SNIFF_BYTES = 64 * 1024;
+    private static final int CRC_BUFFER_SIZE = 256 * 1024;
+    private static final Tika TIKA = new Tika();
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private VideoTaskRepository videoTaskRepository;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private AudioInstructionRepository audioInstructionRepository;
+
+    // fallbackExecution: background jobs that swap a row's URL publish outside any transaction
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        String url = event.getUrl();
+        if (url == null) {
+            return;
+        }
+
+        try {
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+            String contentType = sniffContentType(object, url);
+            String crc32c = object.getCrc32c();
+            if (crc32c == null && fileStorageService.isInternalUrl(url)) {
+                crc32c = computeCrc32c(object);
+            }
+
+            int updated = switch (event.getSource()) {
+                case RAW_VIDEO -> videoTaskRepository.updateMediaInfo(event.getId(), url, object.getSize(), contentType,
+                        object.getGeneration(), crc32c, object.getLastModified());
+                case REVISION -> revisionRepository.updateMediaInfo(event.getId(), url, object.getSize(), contentType,
+                        object.getGeneration(), crc32c, object.getLastModified());
+                case AUDIO_INSTRUCTION -> audioInstructionRepository.updateMediaInfo(event.getId(), url, object.getSize(),
+                        contentType, object.getGeneration(), crc32c, object.getLastModified());
+            };
+
+            if (updated == 0) {
+                System.out.println("Skipped media info for " + event.getSource() + " " + event.getId() + ": row no longer points at " + url);
+            } else {
+                System.out.println("Recorded media info for " + event.getSource() + " " + event.getId() + ": "
+                        + object.getSize() + " bytes, " + contentType);
+            }
+        } catch (Exception e) {
+            // Streaming keeps working without it, just with a storage lookup per request
+            System.err.println("Failed to record media info for " + event.getSource() + " " + event.getId() + ": " + e.getMessage());
+        }
+    }
+
+    // Trusts the file's leading bytes over whatever content type the uploader claimed
+    private String sniffContentType(FileStorageService.StoredObject object, String url) throws IOException {
+        byte[] prefix;
+        try (InputStream inputStream = fileStorageService.openRange(object, 0, Math.min(object.getSize(), SNIFF_BYTES))) {
+            prefix = inputStream.readAllBytes();
+        }
+        String detected = TIKA.detect(prefix, url.substring(url.lastIndexOf('/') + 1));
+        if ("application/octet-stream".equals(detected) && object.getContentType() != null) {
+            return object.getContentType();
+        }
+        return detected;
+    }
+
+    // Same encoding GCS uses: base64 of the big-endian checksum
+    private String computeCrc32c(FileStorageService.StoredObject object) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[CRC_BUFFER_SIZE];
+        try (InputStream inputStream = fileStorageService.openRange(object, 0, object.getSize())) {
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
@@ -0,0 +1,163 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.MediaSeekIndex;
+import com.insp17.ytms.repository.MediaSeekIndexRepository;
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.media.mp4.Mp4Box;
+import com.insp17.ytms.service.media.mp4.Mp4File;
+import com.insp17.ytms.service.media.mp4.Mp4Probe;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Reads only the {@code moov} box of uploaded videos (a few ranged reads, never the media data) and records
+ * duration, resolution and codec on the row plus a keyframe time to byte offset index, which lets streaming
+ * start playback at a given time without the client downloading anything first.
+ */
+@Service
+public class MediaProbeService {
+
+    @Value("${media.probe.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.probe.max-moov-bytes:67108864}")
+    private int maxMoovBytes;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private VideoTaskRepository videoTaskRepository;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private MediaSeekIndexRepository mediaSeekIndexRepository;
+
+    @Autowired
+    private Mp4FaststartService mp4FaststartService;
+
+    public record SeekPoint(long timeMs, long offset) {
+    }
+
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() == MediaUploadedEvent.Source.AUDIO_INSTRUCTION || event.getUrl() == null) {
+            return;
+        }
+        String url = event.getUrl();
+        if (!event.isRewriteSkipped() && mp4FaststartService.needsFaststart(url)) {
+            // Offsets would be stale once the file is rewritten; the remuxed copy is probed instead
+            return;
+        }
+
+        try {
+            Mp4Probe.Result result = probe(url);
+            if (result == null) {
+                System.out.println("No usable moov box in " + url + ", skipping probe");
+                return;
+            }
+
+            int updated = event.getSource() == MediaUploadedEvent.Source.RAW_VIDEO
+                    ? videoTaskRepository.updateVideoProbe(event.getId(), url, result.getDurationMs(),
+                    result.getWidth(), result.getHeight(), result.getCodec())
+                    : revisionRepository.updateVideoProbe(event.getId(), url, result.getDurationMs(),
+                    result.getWidth(), result.getHeight(), result.getCodec());
+
+            if (updated == 0) {
+                System.out.println("Skipped probe for " + event.getSource() + " " + event.getId() + ": row no longer points at " + url);
+            } else {
+                System.out.println("Probed " + event.getSource() + " " + event.getId() + ": " + result.getDurationMs() + " ms, "
+                        + result.getWidth() + "x" + result.getHeight() + " " + result.getCodec() + ", "
+                        + result.getKeyframes().size() + " keyframes");
+            }
+        } catch (Exception e) {
+            // Listing and streaming work without it; seeking just falls back to the player's own requests
+            System.err.println("Failed to probe " + event.getSource() + " " + event.getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indexes keyframes of a derived file (e.g. a proxy rendition) so it can be seeked by time as well.
+     */
+    public void indexSeekPoints(String url) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (probe(url) == null) {
+                System.out.println("No usable moov box in " + url + ", not indexed");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to index " + url + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The last indexed keyframe at or before {@code seconds} in the file at {@code url}, if it has been probed.
+     */
+    public Optional<SeekPoint> findSeekPoint(String url, double seconds) {
+        Optional<MediaSeekIndex> index = mediaSeekIndexRepository.findByUrl(url);
+        if (index.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long targetMs = (long) (seconds * 1000);
+        SeekPoint best = null;
+        for (String entry : index.get().getEntries().split(",")) {
+            int colon = entry.indexOf(':');
+            long timeMs = Long.parseLong(entry, 0, colon, 10);
+            if (best != null && timeMs > targetMs) {
+                break;
+            }
+            best = new SeekPoint(timeMs, Long.parseLong(entry, colon + 1, entry.length(), 10));
+        }
+        return Optional.ofNullable(best);
+    }
+
+    // Reads the moov box and stores the keyframe index; returns null if the file has no usable moov
+    private Mp4Probe.Result probe(String url) throws IOException {
+        FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+        Mp4File file = new Mp4File((offset, length) -> fileStorageService.openRange(object, offset, length), object.getSize());
+        Mp4Box moov = file.readMoov(maxMoovBytes);
+        if (moov == null) {
+            return null;
+        }
+        Mp4Probe.Result result = Mp4Probe.probe(moov);
+        if (!result.getKeyframes().isEmpty()) {
+            saveSeekIndex(url, result);
+        }
+        return result;
+    }
+
+    private void saveSeekIndex(String url, Mp4Probe.Result result) {
+        StringBuilder entries = new StringBuilder(result.getKeyframes().size() * 16);
+        for (Mp4Probe.Keyframe keyframe : result.getKeyframes()) {
+            if (!entries.isEmpty()) {
+                entries.append(',');
+            }
+            entries.append(keyframe.timeMs()).append(':').append(keyframe.offset());
+        }
+
+        // The same file (dedup, republished events) is indexed once; its layout never changes
+        if (mediaSeekIndexRepository.findByUrl(url).isPresent()) {
+            return;
+        }
+        try {
+            mediaSeekIndexRepository.save(new MediaSeekIndex(url, entries.toString()));
+        } catch (DataIntegrityViolationException e) {
+            // Another probe of the same file got there first
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.insp17.ytms.service.media;
+
+/**
+ * Published once a media row pointing at a freshly uploaded file has been saved. Listeners run after the
+ * transaction commits, so they always see the row.
+ * <p>
+ * Jobs that replace the file (faststart, chunking, FLAC) republish the replacement, and the other jobs skip
+ * the original while they wait for it. A rewriting job that gives up republishes the original as
+ * {@link #rewriteSkipped}, which the waiting jobs process as it is and rewriting jobs leave alone.
+ */
+public class MediaUploadedEvent {
+
+    public enum Source {
+        RAW_VIDEO,
+        REVISION,
+        AUDIO_INSTRUCTION
+    }
+
+    private final Source source;
+    private final Long id;
+    private final String url;
+    private final boolean rewriteSkipped;
+
+    public MediaUploadedEvent(Source source, Long id, String url) {
+        this(source, id, url, false);
+    }
+
+    private MediaUploadedEvent(Source source, Long id, String url, boolean rewriteSkipped) {
+        this.source = source;
+        this.id = id;
+        this.url = url;
+        this.rewriteSkipped = rewriteSkipped;
+    }
+
+    public static MediaUploadedEvent rewriteSkipped(Source source, Long id, String url) {
+        return new MediaUploadedEvent(source, id, url, true);
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isRewriteSkipped() {
+        return rewriteSkipped;
+    }
+}
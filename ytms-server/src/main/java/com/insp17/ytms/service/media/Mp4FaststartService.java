@@ -0,0 +1,171 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import com.insp17.ytms.service.media.mp4.Mp4Box;
+import com.insp17.ytms.service.media.mp4.Mp4Faststart;
+import com.insp17.ytms.service.media.mp4.Mp4File;
+import com.insp17.ytms.service.storage.UploadProgressListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Rewrites uploaded MP4/MOV files with the {@code moov} index in front (media.faststart.enabled), so the
+ * player can start after the first request instead of seeking to the end of the file for the index.
+ * Editors' exports often put {@code moov} last. The remux is a straight box copy streamed from the stored
+ * file; the row is then switched to the optimized copy only if it still points at the original.
+ */
+@Service
+public class Mp4FaststartService {
+
+    @Value("${media.faststart.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.faststart.max-moov-bytes:134217728}")
+    private int maxMoovBytes;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private VideoTaskRepository videoTaskRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * True if faststart is enabled and the file at {@code url} would be rewritten. Other post-upload jobs
+     * use this to wait for the optimized copy instead of processing the original.
+     */
+    public boolean needsFaststart(String url) {
+        if (!enabled || !isSupportedUrl(url)) {
+            return false;
+        }
+        try {
+            return isRemuxable(open(fileStorageService.getObjectInfo(url)));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() == MediaUploadedEvent.Source.AUDIO_INSTRUCTION || event.isRewriteSkipped()) {
+            return;
+        }
+        String url = event.getUrl();
+        if (!isSupportedUrl(url)) {
+            return;
+        }
+
+        boolean awaited = false;
+        boolean republished = false;
+        try {
+            long started = System.currentTimeMillis();
+            FileStorageService.StoredObject object = fileStorageService.getObjectInfo(url);
+            Mp4File file = open(object);
+            if (!isRemuxable(file)) {
+                return;
+            }
+            awaited = true;
+            Mp4Box moov = file.readMoov(maxMoovBytes);
+            if (moov == null) {
+                System.out.println("Skipping faststart for " + url + ": moov box exceeds " + maxMoovBytes + " bytes");
+                return;
+            }
+
+            FileStorageService.FileUploadResult result;
+            long expectedSize;
+            try (InputStream remuxed = Mp4Faststart.remux(file, moov)) {
+                // remux patches moov in place, and it can change size (co64 widening, 64-bit headers written as 8 bytes)
+                expectedSize = object.getSize() - file.find("moov").size() + moov.size();
+                result = fileStorageService.uploadStream(remuxed, filenameOf(url), object.getContentType(),
+                        folderOf(url), UploadProgressListener.NONE);
+            }
+            if (result.getSize() != expectedSize) {
+                storageDeletionService.enqueue(result.getUrl());
+                System.err.println("Faststart copy of " + url + " has " + result.getSize() + " bytes, expected "
+                        + expectedSize + "; discarded");
+                return;
+            }
+
+            if (swap(event, url, result.getUrl()) == 0) {
+                // The row was deleted or replaced while we were remuxing it
+                storageDeletionService.enqueue(result.getUrl());
+                System.out.println(event.getSource() + " " + event.getId() + " changed during faststart, discarded " + result.getUrl());
+                return;
+            }
+            eventPublisher.publishEvent(new MediaUploadedEvent(event.getSource(), event.getId(), result.getUrl()));
+            republished = true;
+            storageDeletionService.enqueue(url);
+
+            System.out.println("Moved moov to front of " + event.getSource() + " " + event.getId() + " ("
+                    + object.getSize() + " bytes) in " + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // The original file stays in place and plays, just with a slower start
+            System.err.println("Faststart failed for " + event.getSource() + " " + event.getId() + ": " + e.getMessage());
+        } finally {
+            if (awaited && !republished) {
+                // Probe, proxy and preview skipped the original waiting for our copy; hand it back to them
+                eventPublisher.publishEvent(MediaUploadedEvent.rewriteSkipped(event.getSource(), event.getId(), url));
+            }
+        }
+    }
+
+    // Same test as needsFaststart, so every file the other jobs wait on is either remuxed or republished
+    private boolean isRemuxable(Mp4File file) throws IOException {
+        if (!Mp4Faststart.needsFaststart(file.topLevelBoxes())) {
+            return false;
+        }
+        Mp4File.TopLevelBox moov = file.find("moov");
+        return moov != null && moov.size() <= maxMoovBytes;
+    }
+
+    private int swap(MediaUploadedEvent event, String oldUrl, String newUrl) {
+        if (event.getSource() == MediaUploadedEvent.Source.REVISION) {
+            return revisionRepository.swapEditedVideoUrl(event.getId(), oldUrl, newUrl);
+        }
+        return videoTaskRepository.swapRawVideoUrl(event.getId(), oldUrl, newUrl);
+    }
+
+    private Mp4File open(FileStorageService.StoredObject object) {
+        return new Mp4File((offset, length) -> fileStorageService.openRange(object, offset, length), object.getSize());
+    }
+
+    private boolean isSupportedUrl(String url) {
+        return url != null && (url.startsWith("gs://") || fileStorageService.isInternalUrl(url));
+    }
+
+    private static String filenameOf(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    // gs://bucket/videos/x.mp4 -> videos, /files/videos/x.mp4 -> videos
+    static String folderOf(String url) {
+        String path = url.startsWith("gs://")
+                ? url.substring(url.indexOf('/', "gs://".length()) + 1)
+                : url.substring("/files/".length());
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+}
@@ -0,0 +1,195 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.ProxyRendition;
+import com.insp17.ytms.entity.Revision;
+import com.insp17.ytms.entity.VideoTask;
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.repository.VideoTaskRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import com.insp17.ytms.service.storage.UploadProgressListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transcodes raw videos and revisions into a small H.264 proxy (media.proxy.enabled) so reviewers can
+ * scrub and comment without streaming the full-resolution master. Transcodes run as local ffmpeg
+ * processes on the proxyTranscodeExecutor, whose size bounds how many run at once. The proxy is stored in
+ * the original's folder and recorded on the row only while the row still points at the source file.
+ */
+@Service
+public class ProxyRenditionService {
+
+    private static final int ERROR_TAIL_CHARS = 2000;
+
+    @Value("${media.proxy.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.proxy.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${media.proxy.max-height:720}")
+    private int maxHeight;
+
+    @Value("${media.proxy.video-bitrate:1500k}")
+    private String videoBitrate;
+
+    @Value("${media.proxy.audio-bitrate:96k}")
+    private String audioBitrate;
+
+    @Value("${media.proxy.timeout-minutes:120}")
+    private long timeoutMinutes;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private VideoTaskRepository videoTaskRepository;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    @Autowired
+    private Mp4FaststartService mp4FaststartService;
+
+    @Autowired
+    private RevisionChunkingService revisionChunkingService;
+
+    @Autowired
+    private MediaProbeService mediaProbeService;
+
+    @Async("proxyTranscodeExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() == MediaUploadedEvent.Source.AUDIO_INSTRUCTION || event.getUrl() == null) {
+            return;
+        }
+        String url = event.getUrl();
+        // Both jobs swap in a new URL for the same content and republish; transcode that one instead
+        if (!event.isRewriteSkipped() && (mp4FaststartService.needsFaststart(url) || revisionChunkingService.willConvert(event))) {
+            return;
+        }
+        ProxyRendition existing = currentProxy(event);
+        if (existing != null && existing.isFor(url)) {
+            return;
+        }
+
+        Path output = null;
+        Path log = null;
+        try {
+            long started = System.currentTimeMillis();
+            output = Files.createTempFile("ytms-proxy-", ".mp4");
+            log = Files.createTempFile("ytms-proxy-", ".log");
+            transcode(inputFor(url), output, log);
+
+            FileStorageService.FileUploadResult result;
+            try (InputStream inputStream = Files.newInputStream(output)) {
+                result = fileStorageService.uploadStream(inputStream, proxyFilename(url), "video/mp4",
+                        proxyFolder(url), UploadProgressListener.NONE);
+            }
+
+            int updated = event.getSource() == MediaUploadedEvent.Source.RAW_VIDEO
+                    ? videoTaskRepository.updateRawVideoProxy(event.getId(), url, result.getUrl(), result.getSize())
+                    : revisionRepository.updateProxy(event.getId(), url, result.getUrl(), result.getSize());
+            if (updated == 0) {
+                // The row was deleted or replaced while we were transcoding it
+                storageDeletionService.enqueue(result.getUrl());
+                System.out.println(event.getSource() + " " + event.getId() + " changed during transcoding, discarded " + result.getUrl());
+                return;
+            }
+            if (existing != null && existing.getUrl() != null && !existing.getUrl().equals(result.getUrl())) {
+                storageDeletionService.enqueue(existing.getUrl());
+            }
+            mediaProbeService.indexSeekPoints(result.getUrl());
+
+            System.out.println("Created proxy for " + event.getSource() + " " + event.getId() + ": " + result.getSize()
+                    + " bytes in " + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // Playback falls back to the original
+            System.err.println("Proxy transcode failed for " + event.getSource() + " " + event.getId() + ": " + e.getMessage());
+        } finally {
+            deleteQuietly(output);
+            deleteQuietly(log);
+        }
+    }
+
+    private ProxyRendition currentProxy(MediaUploadedEvent event) {
+        if (event.getSource() == MediaUploadedEvent.Source.RAW_VIDEO) {
+            return videoTaskRepository.findById(event.getId()).map(VideoTask::getRawVideoProxy).orElse(null);
+        }
+        return revisionRepository.findById(event.getId()).map(Revision::getProxy).orElse(null);
+    }
+
+    // ffmpeg reads local files directly and stored objects over HTTP with range requests, so nothing is staged
+    private String inputFor(String url) throws IOException {
+        if (fileStorageService.isInternalUrl(url)) {
+            return fileStorageService.resolveInternalPath(url).toString();
+        }
+        // ffmpeg may seek or reconnect at any point until it times out; a cached URL could expire before that
+        return fileStorageService.getSignedUrlToDownload(url, timeoutMinutes);
+    }
+
+    private void transcode(String input, Path output, Path log) throws IOException, InterruptedException {
+        List<String> command = List.of(
+                ffmpegPath, "-nostdin", "-y", "-v", "error",
+                "-i", input,
+                "-map", "0:v:0", "-map", "0:a:0?",
+                // Never upscale; -2 keeps the width even as libx264 requires
+                "-vf", "scale=-2:'min(" + maxHeight + ",ih)'",
+                "-c:v", "libx264", "-preset", "veryfast", "-pix_fmt", "yuv420p",
+                "-b:v", videoBitrate, "-maxrate", videoBitrate, "-bufsize", videoBitrate,
+                "-c:a", "aac", "-b:a", audioBitrate, "-ac", "2",
+                "-movflags", "+faststart",
+                output.toString());
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("ffmpeg timed out after " + timeoutMinutes + " minutes");
+        }
+        if (process.exitValue() != 0) {
+            String logText = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+            throw new IOException("ffmpeg exited with " + process.exitValue() + ": "
+                    + logText.substring(Math.max(0, logText.length() - ERROR_TAIL_CHARS)).trim());
+        }
+    }
+
+    // Next to the original; chunked files have no folder of their own
+    private String proxyFolder(String url) {
+        return fileStorageService.isChunkedUrl(url) ? "proxies" : Mp4FaststartService.folderOf(url);
+    }
+
+    private static String proxyFilename(String url) {
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "_proxy.mp4";
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete temporary file " + path + ": " + e.getMessage());
+        }
+    }
+}
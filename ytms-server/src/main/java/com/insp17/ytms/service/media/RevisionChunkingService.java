@@ -0,0 +1,91 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import com.insp17.ytms.service.storage.cdc.ChunkedObjectStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Moves uploaded revisions into content-defined chunk storage (media.cdc.enabled). Revisions are uploaded
+ * straight to the bucket through signed URLs, so the conversion runs afterwards: the file is chunked, the
+ * row is pointed at the new manifest and the original object is deleted. Chunks already stored for earlier
+ * revisions of the same footage are reused, so each new revision only adds the parts that changed.
+ */
+@Service
+public class RevisionChunkingService {
+
+    @Value("${media.cdc.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    @Autowired
+    private Mp4FaststartService mp4FaststartService;
+
+    /**
+     * True if the file in {@code event} is about to be replaced by a chunked copy, which is republished
+     * once the row points at it.
+     */
+    public boolean willConvert(MediaUploadedEvent event) {
+        String url = event.getUrl();
+        if (!enabled || event.getSource() != MediaUploadedEvent.Source.REVISION || event.isRewriteSkipped()
+                || url == null || !url.startsWith("gs://")) {
+            return false;
+        }
+        // Chunk the remuxed copy instead; it is republished once the row points at it
+        return !mp4FaststartService.needsFaststart(url);
+    }
+
+    @Async("revisionChunkingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!willConvert(event)) {
+            return;
+        }
+        String url = event.getUrl();
+
+        boolean republished = false;
+        try {
+            long started = System.currentTimeMillis();
+            ChunkedObjectStore.StoreResult result = fileStorageService.convertToChunked(url);
+
+            if (revisionRepository.swapEditedVideoUrl(event.getId(), url, result.getUrl()) == 0) {
+                // The revision was deleted or replaced while we were chunking it
+                storageDeletionService.enqueue(result.getUrl());
+                System.out.println("Revision " + event.getId() + " changed during chunking, discarded " + result.getUrl());
+                return;
+            }
+            eventPublisher.publishEvent(new MediaUploadedEvent(MediaUploadedEvent.Source.REVISION, event.getId(), result.getUrl()));
+            republished = true;
+            storageDeletionService.enqueue(url);
+
+            System.out.println("Chunked revision " + event.getId() + " into " + result.getChunkCount() + " chunks, "
+                    + result.getNewBytes() + " of " + result.getSize() + " bytes new, in "
+                    + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // The revision keeps its original object and stays fully usable
+            System.err.println("Failed to chunk revision " + event.getId() + ": " + e.getMessage());
+        } finally {
+            if (!republished) {
+                // Proxy and preview skipped the original waiting for the chunked copy; hand it back to them
+                eventPublisher.publishEvent(MediaUploadedEvent.rewriteSkipped(MediaUploadedEvent.Source.REVISION, event.getId(), url));
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.Revision;
+import com.insp17.ytms.entity.ScrubPreview;
+import com.insp17.ytms.repository.RevisionRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Builds hover previews for revisions (media.scrub.enabled): ffmpeg grabs one small frame every few
+ * seconds, the frames are packed into JPEG sprite sheets and a WebVTT file maps each time range to a tile
+ * ({@code sprite_000.jpg#xywh=...}). Everything goes to the public bucket with long cache lifetimes, so the
+ * player never has to range-request the video itself to show a preview.
+ */
+@Service
+public class ScrubPreviewService {
+
+    private static final String PREVIEW_PREFIX = "scrub/";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final int ERROR_TAIL_CHARS = 2000;
+
+    @Value("${media.scrub.enabled:false}")
+    private boolean enabled;
+
+    @Value("${media.proxy.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${media.scrub.interval-seconds:5}")
+    private int intervalSeconds;
+
+    @Value("${media.scrub.frame-width:160}")
+    private int frameWidth;
+
+    @Value("${media.scrub.columns:10}")
+    private int columns;
+
+    @Value("${media.scrub.rows:10}")
+    private int rows;
+
+    @Value("${media.scrub.jpeg-quality:0.7}")
+    private float jpegQuality;
+
+    @Value("${media.scrub.timeout-minutes:60}")
+    private long timeoutMinutes;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private RevisionRepository revisionRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    @Autowired
+    private Mp4FaststartService mp4FaststartService;
+
+    @Autowired
+    private RevisionChunkingService revisionChunkingService;
+
+    @Async("proxyTranscodeExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMediaUploaded(MediaUploadedEvent event) {
+        if (!enabled || event.getSource() != MediaUploadedEvent.Source.REVISION || event.getUrl() == null) {
+            return;
+        }
+        if (!fileStorageService.isGcpConfigured()) {
+            // Previews are served from the public bucket, which INTERNAL storage doesn't have
+            return;
+        }
+        String url = event.getUrl();
+        // Both jobs swap in a new URL for the same content and republish; extract from that one instead
+        if (!event.isRewriteSkipped() && (mp4FaststartService.needsFaststart(url) || revisionChunkingService.willConvert(event))) {
+            return;
+        }
+        ScrubPreview existing = revisionRepository.findById(event.getId()).map(Revision::getScrubPreview).orElse(null);
+        if (existing != null && existing.isFor(url)) {
+            return;
+        }
+
+        Path workDir = null;
+        try {
+            long started = System.currentTimeMillis();
+            workDir = Files.createTempDirectory("ytms-scrub-");
+            extractFrames(inputFor(url), workDir);
+
+            List<Path> frames;
+            try (Stream<Path> files = Files.list(workDir)) {
+                frames = files.filter(path -> path.getFileName().toString().startsWith("frame_"))
+                        .sorted(Comparator.comparing(Path::toString))
+                        .toList();
+            }
+            if (frames.isEmpty()) {
+                System.out.println("No frames extracted from revision " + event.getId() + ", skipping scrub preview");
+                return;
+            }
+
+            String folder = PREVIEW_PREFIX + "revision-" + event.getId() + "-" + UUID.randomUUID().toString().substring(0, 8) + "/";
+            ScrubPreview preview = writeSprites(frames, folder, url);
+
+            if (revisionRepository.updateScrubPreview(event.getId(), url, preview.getVttUrl(), preview.getSpriteCount()) == 0) {
+                // The revision was deleted or replaced while we were working on it
+                preview.storedUrls().forEach(storageDeletionService::enqueue);
+                System.out.println("Revision " + event.getId() + " changed during scrub preview generation, discarded " + folder);
+                return;
+            }
+            if (existing != null) {
+                existing.storedUrls().forEach(storageDeletionService::enqueue);
+            }
+
+            System.out.println("Created scrub preview for revision " + event.getId() + ": " + frames.size() + " frames in "
+                    + preview.getSpriteCount() + " sheets, " + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // The player simply shows no hover preview
+            System.err.println("Scrub preview failed for revision " + event.getId() + ": " + e.getMessage());
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    // ffmpeg reads local files directly and stored objects over HTTP with range requests, so nothing is staged
+    private String inputFor(String url) throws IOException {
+        if (fileStorageService.isInternalUrl(url)) {
+            return fileStorageService.resolveInternalPath(url).toString();
+        }
+        // ffmpeg may seek or reconnect at any point until it times out; a cached URL could expire before that
+        return fileStorageService.getSignedUrlToDownload(url, timeoutMinutes);
+    }
+
+    private void extractFrames(String input, Path workDir) throws IOException, InterruptedException {
+        Path log = workDir.resolve("ffmpeg.log");
+        List<String> command = List.of(
+                ffmpegPath, "-nostdin", "-y", "-v", "error",
+                // Decoding keyframes only is far cheaper and plenty for a thumbnail-sized preview
+                "-skip_frame", "nokey",
+                "-i", input,
+                "-map", "0:v:0",
+                "-vf", "fps=1/" + intervalSeconds + ",scale=" + frameWidth + ":-2",
+                "-q:v", "3",
+                workDir.resolve("frame_%05d.jpg").toString());
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("ffmpeg timed out after " + timeoutMinutes + " minutes");
+        }
+        if (process.exitValue() != 0) {
+            String output = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+            throw new IOException("ffmpeg exited with " + process.exitValue() + ": "
+                    + output.substring(Math.max(0, output.length() - ERROR_TAIL_CHARS)).trim());
+        }
+    }
+
+    // Frame i covers [i * interval, (i + 1) * interval), the timestamps ffmpeg's fps filter samples at
+    private ScrubPreview writeSprites(List<Path> frames, String folder, String sourceUrl) throws IOException {
+        BufferedImage first = ImageIO.read(frames.get(0).toFile());
+        int tileWidth = first.getWidth();
+        int tileHeight = first.getHeight();
+        int perSheet = columns * rows;
+        int sheetCount = (frames.size() + perSheet - 1) / perSheet;
+
+        StringBuilder vtt = new StringBuilder("WEBVTT\n\n");
+        for (int sheet = 0; sheet < sheetCount; sheet++) {
+            int from = sheet * perSheet;
+            int to = Math.min(frames.size(), from + perSheet);
+            int sheetRows = (to - from + columns - 1) / columns;
+
+            BufferedImage sprite = new BufferedImage(tileWidth * Math.min(columns, to - from), tileHeight * sheetRows,
+                    BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = sprite.createGraphics();
+            try {
+                for (int i = from; i < to; i++) {
+                    BufferedImage frame = i == 0 ? first : ImageIO.read(frames.get(i).toFile());
+                    int x = ((i - from) % columns) * tileWidth;
+                    int y = ((i - from) / columns) * tileHeight;
+                    graphics.drawImage(frame, x, y, tileWidth, tileHeight, null);
+
+                    vtt.append(timestamp((long) i * intervalSeconds)).append(" --> ")
+                            .append(timestamp((long) (i + 1) * intervalSeconds)).append('\n')
+                            .append(ScrubPreview.spriteName(sheet))
+                            .append("#xywh=").append(x).append(',').append(y).append(',')
+                            .append(tileWidth).append(',').append(tileHeight).append("\n\n");
+                }
+            } finally {
+                graphics.dispose();
+            }
+            fileStorageService.uploadPublicObject(folder + ScrubPreview.spriteName(sheet), encodeJpeg(sprite),
+                    "image/jpeg", CACHE_CONTROL);
+        }
+
+        String vttUrl = fileStorageService.uploadPublicObject(folder + "thumbnails.vtt",
+                vtt.toString().getBytes(StandardCharsets.UTF_8), "text/vtt", CACHE_CONTROL);
+        return new ScrubPreview(vttUrl, sourceUrl, sheetCount);
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String timestamp(long seconds) {
+        return String.format("%02d:%02d:%02d.000", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    System.err.println("Could not delete temporary file " + path + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+}
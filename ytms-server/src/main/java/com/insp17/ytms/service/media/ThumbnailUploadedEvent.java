@@ -0,0 +1,24 @@
+package com.insp17.ytms.service.media;
+
+/**
+ * Published when video metadata is saved with a new thumbnail URL. Listeners run after the transaction
+ * commits, so they always see the row.
+ */
+public class ThumbnailUploadedEvent {
+
+    private final Long metadataId;
+    private final String url;
+
+    public ThumbnailUploadedEvent(Long metadataId, String url) {
+        this.metadataId = metadataId;
+        this.url = url;
+    }
+
+    public Long getMetadataId() {
+        return metadataId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
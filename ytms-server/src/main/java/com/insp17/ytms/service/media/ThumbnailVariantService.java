@@ -0,0 +1,209 @@
+package com.insp17.ytms.service.media;
+
+import com.insp17.ytms.entity.ThumbnailVariants;
+import com.insp17.ytms.entity.VideoMetadata;
+import com.insp17.ytms.repository.VideoMetadataRepository;
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.StorageDeletionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Generates downscaled JPEG copies of video thumbnails (media.thumbnail.variants.enabled) so list views
+ * don't load the multi-megabyte original. The thumbnail is decoded once and each width is scaled and
+ * encoded in parallel. Files are named after a hash of their content and cached as immutable, since a
+ * new thumbnail always gets new names. The set is recorded on the metadata as a srcset, and only while the
+ * row still points at the thumbnail it came from.
+ */
+@Service
+public class ThumbnailVariantService {
+
+    private static final String VARIANT_PREFIX = "thumbnails/variants/";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final int HASH_HEX_CHARS = 16;
+
+    @Value("${media.thumbnail.variants.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.thumbnail.widths:320,640,1280}")
+    private int[] widths;
+
+    @Value("${media.thumbnail.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${media.thumbnail.max-source-bytes:52428800}")
+    private long maxSourceBytes;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private VideoMetadataRepository videoMetadataRepository;
+
+    @Autowired
+    private StorageDeletionService storageDeletionService;
+
+    @Async("mediaProcessingExecutor")
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onThumbnailUploaded(ThumbnailUploadedEvent event) {
+        if (!enabled || event.getUrl() == null || event.getUrl().isBlank()) {
+            return;
+        }
+        if (!fileStorageService.isGcpConfigured()) {
+            // Thumbnails live in the public bucket, which INTERNAL storage doesn't have
+            return;
+        }
+        String url = event.getUrl();
+        ThumbnailVariants existing = videoMetadataRepository.findById(event.getMetadataId())
+                .map(VideoMetadata::getThumbnailVariants)
+                .orElse(null);
+        if (existing != null && existing.isFor(url)) {
+            return;
+        }
+
+        try {
+            long started = System.currentTimeMillis();
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(fileStorageService.readPublicObject(url, maxSourceBytes)));
+            if (source == null) {
+                System.out.println("No ImageIO decoder for thumbnail " + url + ", skipping variants");
+                return;
+            }
+            BufferedImage opaque = flatten(source);
+
+            // Never upscale; an original narrower than every target is already small enough
+            int[] targets = Arrays.stream(widths).filter(width -> width > 0 && width < opaque.getWidth()).distinct().sorted().toArray();
+            if (targets.length == 0) {
+                return;
+            }
+
+            List<ThumbnailVariants.Variant> variants;
+            try {
+                variants = new ArrayList<>(Arrays.stream(targets).parallel()
+                        .mapToObj(width -> createVariant(opaque, width, event.getMetadataId(), url))
+                        .toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            // The original tops the set so wide layouts still get full resolution
+            if (!url.contains(" ") && !url.contains(",")) {
+                variants.add(new ThumbnailVariants.Variant(source.getWidth(), url));
+            }
+
+            ThumbnailVariants created = new ThumbnailVariants(ThumbnailVariants.toSrcset(variants), url);
+            if (videoMetadataRepository.updateThumbnailVariants(event.getMetadataId(), url, created.getSrcset()) == 0) {
+                // The thumbnail was replaced or the metadata deleted while we were working on it
+                created.storedUrls().forEach(storageDeletionService::enqueue);
+                System.out.println("Metadata " + event.getMetadataId() + " changed during thumbnail resizing, discarded variants");
+                return;
+            }
+            if (existing != null) {
+                existing.storedUrls().forEach(storageDeletionService::enqueue);
+            }
+
+            System.out.println("Created " + targets.length + " thumbnail variants for metadata " + event.getMetadataId() + " from "
+                    + source.getWidth() + "x" + source.getHeight() + " in " + (System.currentTimeMillis() - started) + " ms");
+        } catch (Exception e) {
+            // List views fall back to the original thumbnail
+            System.err.println("Thumbnail variants failed for metadata " + event.getMetadataId() + ": " + e.getMessage());
+        }
+    }
+
+    private ThumbnailVariants.Variant createVariant(BufferedImage source, int width, Long metadataId, String sourceUrl) {
+        try {
+            byte[] jpeg = encodeJpeg(scale(source, width));
+            String name = VARIANT_PREFIX + metadataId + "-" + contentHash(sourceUrl, jpeg) + "-" + width + "w.jpg";
+            return new ThumbnailVariants.Variant(width, fileStorageService.uploadPublicObject(name, jpeg, "image/jpeg", CACHE_CONTROL));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // JPEG has no alpha; transparent PNGs are composited onto white instead of turning black
+    private static BufferedImage flatten(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+            return source;
+        }
+        BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    // Halving steps with bilinear filtering, then one final step: close to area averaging at a fraction of the cost
+    private static BufferedImage scale(BufferedImage source, int width) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage current = source;
+        while (true) {
+            int nextWidth = Math.max(width, current.getWidth() / 2);
+            int nextHeight = Math.max(height, current.getHeight() / 2);
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            if (nextWidth == width && nextHeight == height) {
+                return current;
+            }
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    // Covers the source URL too, so re-uploading the same image never reuses the names of the set it replaces
+    private static String contentHash(String sourceUrl, byte[] data) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(sourceUrl.getBytes(StandardCharsets.UTF_8));
+            byte[] digest = sha256.digest(data);
+            return HexFormat.of().formatHex(digest).substring(0, HASH_HEX_CHARS);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.insp17.ytms.service.media.audio;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Lossless FLAC encoder for integer PCM. Each 4096-frame block tries the fixed predictors (order 0 to 4)
+ * with partitioned Rice coding per channel, plus left/side, right/side and mid/side for stereo, and keeps
+ * the smallest. Roughly what {@code flac -2} produces. Samples are written as they come in; the STREAMINFO
+ * block (frame sizes, total samples, MD5) is patched in place by {@link #finish()}, so the output must be
+ * a seekable file.
+ */
+public class FlacEncoder {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_FIXED_ORDER = 4;
+    private static final int MAX_PARTITION_ORDER = 8;
+    private static final int STREAMINFO_OFFSET = 8;
+    private static final int STREAMINFO_LENGTH = 34;
+
+    private static final int CHANNELS_LEFT_SIDE = 8;
+    private static final int CHANNELS_RIGHT_SIDE = 9;
+    private static final int CHANNELS_MID_SIDE = 10;
+
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_TABLE[i] = crc16 & 0xFFFF;
+        }
+    }
+
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final MessageDigest md5;
+
+    private final int[][] block;
+    private int blockFill;
+    private long frameNumber;
+    private long totalFrames;
+    private long bytesWritten;
+    private int minFrameSize = Integer.MAX_VALUE;
+    private int maxFrameSize;
+
+    private final BitWriter bits = new BitWriter();
+    private final int[] mid = new int[BLOCK_SIZE];
+    private final int[] side = new int[BLOCK_SIZE];
+    private final int[] residual = new int[BLOCK_SIZE];
+    private final byte[] md5Buffer;
+
+    public FlacEncoder(FileChannel channel, int sampleRate, int channels, int bitsPerSample) throws IOException {
+        if (!isSupported(sampleRate, channels, bitsPerSample)) {
+            throw new IllegalArgumentException("FLAC can't hold " + channels + " channels of " + bitsPerSample
+                    + " bit audio at " + sampleRate + " Hz");
+        }
+        this.channel = channel;
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.block = new int[channels][BLOCK_SIZE];
+        this.md5Buffer = new byte[BLOCK_SIZE * channels * ((bitsPerSample + 7) / 8)];
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Placeholder STREAMINFO, marked as the last metadata block; filled in by finish()
+        out.write(new byte[]{'f', 'L', 'a', 'C', (byte) 0x80, 0, 0, STREAMINFO_LENGTH});
+        out.write(new byte[STREAMINFO_LENGTH]);
+        bytesWritten = STREAMINFO_OFFSET + STREAMINFO_LENGTH;
+    }
+
+    // Up to 24 bits: every decoder handles that, 32-bit FLAC is recent and rarely supported
+    public static boolean isSupported(int sampleRate, int channels, int bitsPerSample) {
+        return sampleRate > 0 && sampleRate <= 655350 && channels >= 1 && channels <= 8
+                && bitsPerSample >= 4 && bitsPerSample <= 24;
+    }
+
+    /**
+     * Adds {@code frames} interleaved frames of signed samples at the encoder's bit depth.
+     */
+    public void write(int[] samples, int frames) throws IOException {
+        int index = 0;
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++) {
+                block[c][blockFill] = samples[index++];
+            }
+            if (++blockFill == BLOCK_SIZE) {
+                encodeBlock();
+            }
+        }
+    }
+
+    /**
+     * Flushes the last partial block and writes the final STREAMINFO. Returns the size of the FLAC file.
+     */
+    public long finish() throws IOException {
+        if (blockFill > 0) {
+            encodeBlock();
+        }
+        out.flush();
+
+        ByteBuffer info = ByteBuffer.allocate(STREAMINFO_LENGTH);
+        info.putShort((short) BLOCK_SIZE);
+        info.putShort((short) BLOCK_SIZE);
+        put24(info, frameNumber == 0 ? 0 : minFrameSize);
+        put24(info, maxFrameSize);
+        // 20 bits sample rate, 3 bits channels - 1, 5 bits bits per sample - 1, 36 bits total samples
+        long packed = ((long) sampleRate << 44) | ((long) (channels - 1) << 41) | ((long) (bitsPerSample - 1) << 36)
+                | (totalFrames & 0xFFFFFFFFFL);
+        info.putLong(packed);
+        info.put(md5.digest());
+        info.flip();
+        while (info.hasRemaining()) {
+            channel.write(info, STREAMINFO_OFFSET + info.position());
+        }
+        return bytesWritten;
+    }
+
+    private void encodeBlock() throws IOException {
+        int n = blockFill;
+        updateMd5(n);
+
+        bits.reset();
+        bits.write(0xFFF8, 16);
+        bits.write(blockSizeCode(n), 4);
+        bits.write(sampleRateCode(), 4);
+
+        int assignment = channels - 1;
+        if (channels == 2) {
+            int[] left = block[0];
+            int[] right = block[1];
+            for (int i = 0; i < n; i++) {
+                mid[i] = (left[i] + right[i]) >> 1;
+                side[i] = left[i] - right[i];
+            }
+            long leftCost = cost(left, n, bitsPerSample);
+            long rightCost = cost(right, n, bitsPerSample);
+            long midCost = cost(mid, n, bitsPerSample);
+            long sideCost = cost(side, n, bitsPerSample + 1);
+
+            long best = leftCost + rightCost;
+            if (leftCost + sideCost < best) {
+                best = leftCost + sideCost;
+                assignment = CHANNELS_LEFT_SIDE;
+            }
+            if (rightCost + sideCost < best) {
+                best = rightCost + sideCost;
+                assignment = CHANNELS_RIGHT_SIDE;
+            }
+            if (midCost + sideCost < best) {
+                assignment = CHANNELS_MID_SIDE;
+            }
+        }
+
+        bits.write(assignment, 4);
+        bits.write(sampleSizeCode(), 3);
+        bits.write(0, 1);
+        writeUtf8(frameNumber);
+        if ((blockSizeCode(n) & 0xE) == 6) {
+            bits.write(n - 1, blockSizeCode(n) == 6 ? 8 : 16);
+        }
+        bits.write(bits.crc8(), 8);
+
+        switch (assignment) {
+            case CHANNELS_LEFT_SIDE -> {
+                writeSubframe(block[0], n, bitsPerSample);
+                writeSubframe(side, n, bitsPerSample + 1);
+            }
+            case CHANNELS_RIGHT_SIDE -> {
+                writeSubframe(side, n, bitsPerSample + 1);
+                writeSubframe(block[1], n, bitsPerSample);
+            }
+            case CHANNELS_MID_SIDE -> {
+                writeSubframe(mid, n, bitsPerSample);
+                writeSubframe(side, n, bitsPerSample + 1);
+            }
+            default -> {
+                for (int c = 0; c < channels; c++) {
+                    writeSubframe(block[c], n, bitsPerSample);
+                }
+            }
+        }
+        bits.alignToByte();
+        bits.write(bits.crc16(), 16);
+
+        out.write(bits.buffer(), 0, bits.length());
+        bytesWritten += bits.length();
+        minFrameSize = Math.min(minFrameSize, bits.length());
+        maxFrameSize = Math.max(maxFrameSize, bits.length());
+        totalFrames += n;
+        frameNumber++;
+        blockFill = 0;
+    }
+
+    // Estimated size in bits of the cheapest subframe for these samples
+    private long cost(int[] samples, int n, int sampleBits) {
+        if (isConstant(samples, n)) {
+            return 8 + sampleBits;
+        }
+        long best = 8 + (long) n * sampleBits;
+        for (int order = 0; order <= MAX_FIXED_ORDER && order < n; order++) {
+            computeResidual(samples, n, order);
+            long cost = 8 + (long) order * sampleBits + riceCost(n, order, null);
+            best = Math.min(best, cost);
+        }
+        return best;
+    }
+
+    private void writeSubframe(int[] samples, int n, int sampleBits) {
+        if (isConstant(samples, n)) {
+            bits.write(0, 8);
+            bits.write(samples[0], sampleBits);
+            return;
+        }
+
+        int bestOrder = -1;
+        long best = (long) n * sampleBits;
+        for (int order = 0; order <= MAX_FIXED_ORDER && order < n; order++) {
+            computeResidual(samples, n, order);
+            long cost = (long) order * sampleBits + riceCost(n, order, null);
+            if (cost < best) {
+                best = cost;
+                bestOrder = order;
+            }
+        }
+
+        if (bestOrder < 0) {
+            // Noise: verbatim is no bigger than any prediction
+            bits.write(0x02, 8);
+            for (int i = 0; i < n; i++) {
+                bits.write(samples[i], sampleBits);
+            }
+            return;
+        }
+
+        bits.write(0x10 | (bestOrder << 1), 8);
+        for (int i = 0; i < bestOrder; i++) {
+            bits.write(samples[i], sampleBits);
+        }
+        computeResidual(samples, n, bestOrder);
+        RicePlan plan = new RicePlan();
+        riceCost(n, bestOrder, plan);
+        writeResidual(n, bestOrder, plan);
+    }
+
+    private static boolean isConstant(int[] samples, int n) {
+        for (int i = 1; i < n; i++) {
+            if (samples[i] != samples[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Fixed predictors are finite differences; residual[i] is undefined for i < order
+    private void computeResidual(int[] x, int n, int order) {
+        switch (order) {
+            case 0 -> System.arraycopy(x, 0, residual, 0, n);
+            case 1 -> {
+                for (int i = 1; i < n; i++) {
+                    residual[i] = x[i] - x[i - 1];
+                }
+            }
+            case 2 -> {
+                for (int i = 2; i < n; i++) {
+                    residual[i] = x[i] - 2 * x[i - 1] + x[i - 2];
+                }
+            }
+            case 3 -> {
+                for (int i = 3; i < n; i++) {
+                    residual[i] = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                }
+            }
+            default -> {
+                for (int i = 4; i < n; i++) {
+                    residual[i] = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+                }
+            }
+        }
+    }
+
+    private static final class RicePlan {
+        int partitionOrder;
+        int[] parameters;
+        boolean wideParameters;
+    }
+
+    /**
+     * Bits needed for the residual with the best partition order, including the coding method header.
+     * Fills {@code plan} with the chosen layout if given.
+     */
+    private long riceCost(int n, int predictorOrder, RicePlan plan) {
+        int maxOrder = 0;
+        while (maxOrder < MAX_PARTITION_ORDER && (n & ((2 << maxOrder) - 1)) == 0 && (n >> (maxOrder + 1)) > predictorOrder) {
+            maxOrder++;
+        }
+
+        // Sums of zigzagged residuals for the finest partitioning; coarser ones add neighbours up
+        int partitions = 1 << maxOrder;
+        long[] sums = new long[partitions];
+        int partitionSize = n >> maxOrder;
+        for (int p = 0, i = predictorOrder; p < partitions; p++) {
+            int end = (p + 1) * partitionSize;
+            long sum = 0;
+            for (; i < end; i++) {
+                sum += zigzag(residual[i]);
+            }
+            sums[p] = sum;
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int order = maxOrder; order >= 0; order--) {
+            int count = 1 << order;
+            int[] parameters = new int[count];
+            long cost = 0;
+            boolean wide = false;
+            for (int p = 0; p < count; p++) {
+                int samples = (n >> order) - (p == 0 ? predictorOrder : 0);
+                parameters[p] = riceParameter(sums[p], samples);
+                wide |= parameters[p] > 14;
+                cost += (long) samples * (parameters[p] + 1) + (sums[p] >> parameters[p]);
+            }
+            cost += 6 + (long) count * (wide ? 5 : 4);
+            if (cost < best) {
+                best = cost;
+                if (plan != null) {
+                    plan.partitionOrder = order;
+                    plan.parameters = parameters;
+                    plan.wideParameters = wide;
+                }
+            }
+            if (order > 0) {
+                for (int p = 0; p < count / 2; p++) {
+                    sums[p] = sums[2 * p] + sums[2 * p + 1];
+                }
+            }
+        }
+        return best;
+    }
+
+    // floor(log2(mean)), which minimises count * (k + 1) + sum >> k closely enough
+    private static int riceParameter(long sum, int samples) {
+        if (samples <= 0 || sum <= samples) {
+            return 0;
+        }
+        int k = 63 - Long.numberOfLeadingZeros(sum / samples);
+        return Math.min(k, 30);
+    }
+
+    private void writeResidual(int n, int predictorOrder, RicePlan plan) {
+        bits.write(plan.wideParameters ? 1 : 0, 2);
+        bits.write(plan.partitionOrder, 4);
+        int partitionSize = n >> plan.partitionOrder;
+        int i = predictorOrder;
+        for (int p = 0; p < plan.parameters.length; p++) {
+            int k = plan.parameters[p];
+            bits.write(k, plan.wideParameters ? 5 : 4);
+            int end = (p + 1) * partitionSize;
+            for (; i < end; i++) {
+                long value = zigzag(residual[i]);
+                bits.writeZeros(value >>> k);
+                bits.write(1, 1);
+                if (k > 0) {
+                    bits.write(value, k);
+                }
+            }
+        }
+    }
+
+    private static long zigzag(int value) {
+        long v = value;
+        return (v << 1) ^ (v >> 63);
+    }
+
+    // Frame number in the UTF-8 style variable length code FLAC uses
+    private void writeUtf8(long value) {
+        if (value < 0x80) {
+            bits.write(value, 8);
+            return;
+        }
+        int extra = value < 0x800 ? 1 : value < 0x10000 ? 2 : value < 0x200000 ? 3 : value < 0x4000000 ? 4 : 5;
+        int leading = (0xFF00 >> (extra + 1)) & 0xFF;
+        bits.write(leading | (value >>> (6 * extra)), 8);
+        for (int i = extra - 1; i >= 0; i--) {
+            bits.write(0x80 | ((value >>> (6 * i)) & 0x3F), 8);
+        }
+    }
+
+    private static int blockSizeCode(int n) {
+        // 256 << (code - 8) for power-of-two sizes, otherwise the size follows the header
+        if (n >= 256 && n <= 32768 && Integer.bitCount(n) == 1) {
+            return Integer.numberOfTrailingZeros(n);
+        }
+        return n <= 256 ? 6 : 7;
+    }
+
+    private int sampleRateCode() {
+        return switch (sampleRate) {
+            case 88200 -> 1;
+            case 176400 -> 2;
+            case 192000 -> 3;
+            case 8000 -> 4;
+            case 16000 -> 5;
+            case 22050 -> 6;
+            case 24000 -> 7;
+            case 32000 -> 8;
+            case 44100 -> 9;
+            case 48000 -> 10;
+            case 96000 -> 11;
+            default -> 0;
+        };
+    }
+
+    private int sampleSizeCode() {
+        return switch (bitsPerSample) {
+            case 8 -> 1;
+            case 12 -> 2;
+            case 16 -> 4;
+            case 20 -> 5;
+            case 24 -> 6;
+            default -> 0;
+        };
+    }
+
+    // The MD5 covers the samples as little-endian signed integers at the stream's byte width
+    private void updateMd5(int n) {
+        int bytesPerSample = (bitsPerSample + 7) / 8;
+        int offset = 0;
+        for (int i = 0; i < n; i++) {
+            for (int c = 0; c < channels; c++) {
+                int value = block[c][i];
+                for (int b = 0; b < bytesPerSample; b++) {
+                    md5Buffer[offset++] = (byte) (value >> (8 * b));
+                }
+            }
+        }
+        md5.update(md5Buffer, 0, offset);
+    }
+
+    private static void put24(ByteBuffer buffer, int value) {
+        buffer.put((byte) (value >> 16)).put((byte) (value >> 8)).put((byte) value);
+    }
+
+    /**
+     * MSB-first bit writer for one frame.
+     */
+    private static final class BitWriter {
+        private byte[] buffer = new byte[64 * 1024];
+        private int length;
+        private long accumulator;
+        private int pending;
+
+        void reset() {
+            length = 0;
+            accumulator = 0;
+            pending = 0;
+        }
+
+        // Low {@code count} bits of value, count <= 32
+        void write(long value, int count) {
+            accumulator = (accumulator << count) | (value & ((1L << count) - 1));
+            pending += count;
+            while (pending >= 8) {
+                pending -= 8;
+                put((byte) (accumulator >>> pending));
+            }
+        }
+
+        void writeZeros(long count) {
+            while (count >= 32) {
+                write(0, 32);
+                count -= 32;
+            }
+            if (count > 0) {
+                write(0, (int) count);
+            }
+        }
+
+        void alignToByte() {
+            if (pending > 0) {
+                write(0, 8 - pending);
+            }
+        }
+
+        // Over everything written so far; only valid on a byte boundary
+        int crc8() {
+            int crc = 0;
+            for (int i = 0; i < length; i++) {
+                crc = CRC8_TABLE[(crc ^ buffer[i]) & 0xFF];
+            }
+            return crc;
+        }
+
+        int crc16() {
+            int crc = 0;
+            for (int i = 0; i < length; i++) {
+                crc = ((crc << 8) ^ CRC16_TABLE[((crc >> 8) ^ buffer[i]) & 0xFF]) & 0xFFFF;
+            }
+            return crc;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int length() {
+            return length;
+        }
+
+        private void put(byte value) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[length++] = value;
+        }
+    }
+}
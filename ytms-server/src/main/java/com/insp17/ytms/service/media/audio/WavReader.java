@@ -0,0 +1,211 @@
+package com.insp17.ytms.service.media.audio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming reader for RIFF/WAVE files: integer PCM (8 to 32 bit), IEEE float (32/64 bit) and
+ * WAVE_FORMAT_EXTENSIBLE wrapping either. Chunks before {@code data} are skipped; the sample data is read
+ * in one forward pass, so any stream works, including a ranged read straight from storage.
+ */
+public class WavReader {
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_IEEE_FLOAT = 3;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final InputStream in;
+    private final int channels;
+    private final int sampleRate;
+    private final int bitsPerSample;
+    private final int bytesPerSample;
+    private final boolean floatingPoint;
+    private final long totalFrames;
+    private long framesRead;
+    private byte[] buffer = new byte[0];
+    private int[] intBuffer = new int[0];
+
+    public WavReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] header = readFully(12);
+        if (!ascii(header, 0).equals("RIFF") || !ascii(header, 8).equals("WAVE")) {
+            throw new IOException("Not a RIFF/WAVE file");
+        }
+
+        int format = -1;
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        long dataSize;
+        while (true) {
+            byte[] chunkHeader = readFully(8);
+            String id = ascii(chunkHeader, 0);
+            long size = Integer.toUnsignedLong(le32(chunkHeader, 4));
+            if (id.equals("fmt ")) {
+                if (size < 16 || size > 1024) {
+                    throw new IOException("Malformed WAVE fmt chunk");
+                }
+                byte[] fmt = readFully((int) size);
+                format = le16(fmt, 0);
+                channels = le16(fmt, 2);
+                sampleRate = le32(fmt, 4);
+                bitsPerSample = le16(fmt, 14);
+                if (format == FORMAT_EXTENSIBLE && size >= 26) {
+                    // The actual format is the first two bytes of the sub-format GUID
+                    format = le16(fmt, 24);
+                }
+                skip(size & 1);
+            } else if (id.equals("data")) {
+                if (format < 0) {
+                    throw new IOException("WAVE data chunk before fmt chunk");
+                }
+                dataSize = size;
+                break;
+            } else {
+                skip(size + (size & 1));
+            }
+        }
+
+        if (format != FORMAT_PCM && format != FORMAT_IEEE_FLOAT) {
+            throw new IOException("Unsupported WAVE format " + format);
+        }
+        if (channels < 1 || sampleRate < 1 || bitsPerSample < 1 || bitsPerSample > 64
+                || (format == FORMAT_PCM && bitsPerSample > 32)
+                || (format == FORMAT_IEEE_FLOAT && bitsPerSample != 32 && bitsPerSample != 64)) {
+            throw new IOException("Unsupported WAVE layout: " + channels + " channels, " + bitsPerSample + " bits");
+        }
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.bytesPerSample = (bitsPerSample + 7) / 8;
+        this.floatingPoint = format == FORMAT_IEEE_FLOAT;
+        this.totalFrames = dataSize / ((long) channels * bytesPerSample);
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    // From the data chunk header; streams written live may understate it
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    /**
+     * Reads up to {@code samples.length / channels} frames of integer PCM as interleaved signed values at
+     * the file's bit depth. Returns the number of frames read, or 0 at the end of the data.
+     */
+    public int read(int[] samples) throws IOException {
+        if (floatingPoint) {
+            throw new IllegalStateException("Floating point WAVE data has no integer representation");
+        }
+        return readInts(samples, samples.length / channels);
+    }
+
+    private int readInts(int[] samples, int maxFrames) throws IOException {
+        int frames = fill(maxFrames);
+        int shift = bytesPerSample * 8 - bitsPerSample;
+        for (int i = 0, offset = 0; i < frames * channels; i++, offset += bytesPerSample) {
+            int value;
+            if (bytesPerSample == 1) {
+                // 8-bit WAVE is unsigned
+                value = (buffer[offset] & 0xFF) - 128;
+            } else {
+                value = 0;
+                for (int b = 0; b < bytesPerSample; b++) {
+                    value |= (buffer[offset + b] & 0xFF) << (8 * b);
+                }
+                value = (value << (32 - bytesPerSample * 8)) >> (32 - bytesPerSample * 8);
+            }
+            samples[i] = value >> shift;
+        }
+        return frames;
+    }
+
+    /**
+     * Reads up to {@code samples.length / channels} frames as interleaved values in [-1, 1], whatever the
+     * stored format. Returns the number of frames read, or 0 at the end of the data.
+     */
+    public int readNormalized(float[] samples) throws IOException {
+        if (!floatingPoint) {
+            if (intBuffer.length < samples.length) {
+                intBuffer = new int[samples.length];
+            }
+            int[] ints = intBuffer;
+            int frames = readInts(ints, samples.length / channels);
+            float scale = 1f / (1L << (bitsPerSample - 1));
+            for (int i = 0; i < frames * channels; i++) {
+                samples[i] = ints[i] * scale;
+            }
+            return frames;
+        }
+
+        int frames = fill(samples.length / channels);
+        for (int i = 0, offset = 0; i < frames * channels; i++, offset += bytesPerSample) {
+            if (bytesPerSample == 4) {
+                samples[i] = Float.intBitsToFloat(le32(buffer, offset));
+            } else {
+                long bits = Integer.toUnsignedLong(le32(buffer, offset)) | ((long) le32(buffer, offset + 4) << 32);
+                samples[i] = (float) Double.longBitsToDouble(bits);
+            }
+        }
+        return frames;
+    }
+
+    // Reads whole frames into buffer; a trailing partial frame is dropped
+    private int fill(int maxFrames) throws IOException {
+        if (totalFrames > 0 && framesRead >= totalFrames) {
+            return 0;
+        }
+        long wanted = totalFrames > 0 ? Math.min(maxFrames, totalFrames - framesRead) : maxFrames;
+        int frameBytes = channels * bytesPerSample;
+        int length = (int) wanted * frameBytes;
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        int n = in.readNBytes(buffer, 0, length);
+        int frames = n / frameBytes;
+        framesRead += frames;
+        return frames;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] data = in.readNBytes(length);
+        if (data.length != length) {
+            throw new EOFException("Truncated WAVE header");
+        }
+        return data;
+    }
+
+    private void skip(long length) throws IOException {
+        if (length > 0) {
+            in.skipNBytes(length);
+        }
+    }
+
+    private static String ascii(byte[] data, int offset) {
+        return new String(data, offset, 4, StandardCharsets.US_ASCII);
+    }
+
+    private static int le16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int le32(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+}
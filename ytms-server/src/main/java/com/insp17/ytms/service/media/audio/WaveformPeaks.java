@@ -0,0 +1,126 @@
+package com.insp17.ytms.service.media.audio;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Min/max waveform peaks at several zoom levels, built in one pass over the decoded samples. The finest
+ * level holds one min/max pair per {@link #BASE_SAMPLES_PER_PEAK} frames (all channels folded together);
+ * each coarser level merges {@link #ZOOM_FACTOR} pairs of the one below. Values are signed bytes, which is
+ * all the resolution a waveform drawing needs.
+ */
+public class WaveformPeaks {
+
+    public static final int BASE_SAMPLES_PER_PEAK = 256;
+    private static final int ZOOM_FACTOR = 4;
+    // Stop adding coarser levels once a level would have fewer pairs than this
+    private static final int MIN_PEAKS_PER_LEVEL = 500;
+
+    public record Level(int samplesPerPeak, byte[] data) {
+        public int length() {
+            return data.length / 2;
+        }
+    }
+
+    private final ByteArrayOutputStream base = new ByteArrayOutputStream();
+    private int framesInBin = 0;
+    private float min = Float.MAX_VALUE;
+    private float max = -Float.MAX_VALUE;
+    private long totalFrames = 0;
+
+    public void add(float[] interleaved, int frames, int channels) {
+        for (int frame = 0; frame < frames; frame++) {
+            for (int channel = 0; channel < channels; channel++) {
+                float value = interleaved[frame * channels + channel];
+                if (value < min) {
+                    min = value;
+                }
+                if (value > max) {
+                    max = value;
+                }
+            }
+            if (++framesInBin == BASE_SAMPLES_PER_PEAK) {
+                flushBin();
+            }
+        }
+        totalFrames += frames;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public List<Level> finish() {
+        if (framesInBin > 0) {
+            flushBin();
+        }
+        List<Level> levels = new ArrayList<>();
+        Level level = new Level(BASE_SAMPLES_PER_PEAK, base.toByteArray());
+        levels.add(level);
+        while (level.length() / ZOOM_FACTOR >= MIN_PEAKS_PER_LEVEL) {
+            level = coarsen(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    /**
+     * Packs levels as [samplesPerPeak, pair count, pairs...] one after another.
+     */
+    public static byte[] encode(List<Level> levels) {
+        int size = 0;
+        for (Level level : levels) {
+            size += 8 + level.data().length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Level level : levels) {
+            buffer.putInt(level.samplesPerPeak());
+            buffer.putInt(level.length());
+            buffer.put(level.data());
+        }
+        return buffer.array();
+    }
+
+    public static List<Level> decode(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        List<Level> levels = new ArrayList<>();
+        while (buffer.remaining() >= 8) {
+            int samplesPerPeak = buffer.getInt();
+            byte[] data = new byte[buffer.getInt() * 2];
+            buffer.get(data);
+            levels.add(new Level(samplesPerPeak, data));
+        }
+        return levels;
+    }
+
+    private void flushBin() {
+        base.write(quantize(min));
+        base.write(quantize(max));
+        framesInBin = 0;
+        min = Float.MAX_VALUE;
+        max = -Float.MAX_VALUE;
+    }
+
+    private static Level coarsen(Level finer) {
+        int length = (finer.length() + ZOOM_FACTOR - 1) / ZOOM_FACTOR;
+        byte[] data = new byte[length * 2];
+        byte[] source = finer.data();
+        for (int i = 0; i < length; i++) {
+            byte lo = Byte.MAX_VALUE;
+            byte hi = Byte.MIN_VALUE;
+            for (int j = i * ZOOM_FACTOR; j < Math.min(finer.length(), (i + 1) * ZOOM_FACTOR); j++) {
+                lo = (byte) Math.min(lo, source[2 * j]);
+                hi = (byte) Math.max(hi, source[2 * j + 1]);
+            }
+            data[2 * i] = lo;
+            data[2 * i + 1] = hi;
+        }
+        return new Level(finer.samplesPerPeak() * ZOOM_FACTOR, data);
+    }
+
+    private static int quantize(float value) {
+        return Math.round(Math.max(-1f, Math.min(1f, value)) * 127);
+    }
+}
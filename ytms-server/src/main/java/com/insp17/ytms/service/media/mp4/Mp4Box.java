@@ -0,0 +1,157 @@
+package com.insp17.ytms.service.media.mp4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory ISO BMFF box tree, used for the {@code moov} box. Only the containers on the way to the
+ * sample tables are expanded; every other box is kept as opaque payload bytes and written back unchanged.
+ */
+public class Mp4Box {
+
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl", "edts", "dinf", "mvex");
+
+    private String type;
+    private byte[] payload;
+    private final List<Mp4Box> children;
+
+    private Mp4Box(String type, byte[] payload, List<Mp4Box> children) {
+        this.type = type;
+        this.payload = payload;
+        this.children = children;
+    }
+
+    /**
+     * Parses one complete box (header included) from {@code data}.
+     */
+    public static Mp4Box parse(byte[] data) {
+        List<Mp4Box> boxes = parseAll(data, 0, data.length);
+        if (boxes.size() != 1) {
+            throw new IllegalArgumentException("Expected exactly one box, found " + boxes.size());
+        }
+        return boxes.get(0);
+    }
+
+    private static List<Mp4Box> parseAll(byte[] data, int from, int to) {
+        List<Mp4Box> boxes = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int position = from;
+        while (position + 8 <= to) {
+            long size = Integer.toUnsignedLong(buffer.getInt(position));
+            String type = new String(data, position + 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > to) {
+                    throw new IllegalArgumentException("Truncated box header for " + type);
+                }
+                size = buffer.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = to - position;
+            }
+            if (size < headerSize || position + size > to) {
+                throw new IllegalArgumentException("Malformed " + type + " box at " + position);
+            }
+
+            int payloadStart = position + headerSize;
+            int end = (int) (position + size);
+            if (CONTAINERS.contains(type)) {
+                boxes.add(new Mp4Box(type, null, parseAll(data, payloadStart, end)));
+            } else {
+                byte[] payload = new byte[end - payloadStart];
+                System.arraycopy(data, payloadStart, payload, 0, payload.length);
+                boxes.add(new Mp4Box(type, payload, null));
+            }
+            position = end;
+        }
+        return boxes;
+    }
+
+    public byte[] serialize() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) size());
+        write(out);
+        return out.toByteArray();
+    }
+
+    private void write(ByteArrayOutputStream out) {
+        out.writeBytes(ByteBuffer.allocate(8).putInt((int) size()).put(type.getBytes(StandardCharsets.ISO_8859_1)).array());
+        if (children == null) {
+            out.writeBytes(payload);
+        } else {
+            for (Mp4Box child : children) {
+                child.write(out);
+            }
+        }
+    }
+
+    public long size() {
+        long size = 8;
+        if (children == null) {
+            size += payload.length;
+        } else {
+            for (Mp4Box child : children) {
+                size += child.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Every box of {@code type} below this one, depth first.
+     */
+    public List<Mp4Box> findAll(String type) {
+        List<Mp4Box> found = new ArrayList<>();
+        collect(type, found);
+        return found;
+    }
+
+    private void collect(String wanted, List<Mp4Box> found) {
+        if (children == null) {
+            return;
+        }
+        for (Mp4Box child : children) {
+            if (child.type.equals(wanted)) {
+                found.add(child);
+            }
+            child.collect(wanted, found);
+        }
+    }
+
+    /**
+     * First direct child of {@code type}, or null.
+     */
+    public Mp4Box child(String type) {
+        if (children != null) {
+            for (Mp4Box child : children) {
+                if (child.type.equals(type)) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    public List<Mp4Box> getChildren() {
+        return children == null ? List.of() : children;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
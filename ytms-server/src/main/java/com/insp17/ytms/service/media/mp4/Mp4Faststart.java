@@ -0,0 +1,172 @@
+package com.insp17.ytms.service.media.mp4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Rewrites an MP4 so the {@code moov} box comes right after {@code ftyp}, the layout ffmpeg calls
+ * "faststart". Players then get the index with the first bytes instead of having to fetch the end of the
+ * file. Moving {@code moov} in front of the media data shifts that data, so every chunk offset in the
+ * {@code stco}/{@code co64} tables is patched; 32-bit tables are widened to {@code co64} if the shift
+ * would overflow them.
+ */
+public class Mp4Faststart {
+
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+
+    private Mp4Faststart() {
+    }
+
+    /**
+     * True for a plain (non-fragmented) MP4 whose {@code moov} comes after its media data.
+     */
+    public static boolean needsFaststart(List<Mp4File.TopLevelBox> boxes) {
+        Mp4File.TopLevelBox moov = null;
+        Mp4File.TopLevelBox firstMdat = null;
+        for (Mp4File.TopLevelBox box : boxes) {
+            switch (box.type()) {
+                case "moov" -> moov = box;
+                case "mdat" -> firstMdat = firstMdat == null ? box : firstMdat;
+                case "moof" -> {
+                    // Fragmented files address samples relative to their fragments
+                    return false;
+                }
+                default -> {
+                }
+            }
+        }
+        return moov != null && firstMdat != null && moov.offset() > firstMdat.offset();
+    }
+
+    /**
+     * Streams the rewritten file: ftyp, patched moov, then every other top-level box in original order.
+     * Box payloads are read lazily from {@code file} as the stream is consumed.
+     */
+    public static InputStream remux(Mp4File file, Mp4Box moov) throws IOException {
+        List<Mp4File.TopLevelBox> boxes = file.topLevelBoxes();
+        Mp4File.TopLevelBox oldMoov = file.find("moov");
+        Mp4File.TopLevelBox ftyp = boxes.isEmpty() || !boxes.get(0).type().equals("ftyp") ? null : boxes.get(0);
+        long insertAt = ftyp == null ? 0 : ftyp.end();
+
+        byte[] patchedMoov = patchChunkOffsets(moov, insertAt, oldMoov.offset(), oldMoov.size());
+
+        List<Object> segments = new ArrayList<>();
+        if (ftyp != null) {
+            segments.add(ftyp);
+        }
+        segments.add(patchedMoov);
+        for (Mp4File.TopLevelBox box : boxes) {
+            if (box != ftyp && box != oldMoov) {
+                segments.add(box);
+            }
+        }
+
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < segments.size();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                Object segment = segments.get(index++);
+                if (segment instanceof byte[] bytes) {
+                    return new ByteArrayInputStream(bytes);
+                }
+                Mp4File.TopLevelBox box = (Mp4File.TopLevelBox) segment;
+                try {
+                    return file.open(box.offset(), box.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    /**
+     * Serializes {@code moov} with every chunk offset moved to where its data lands once {@code moov}
+     * (originally at {@code oldOffset}, {@code oldSize} bytes) is inserted at {@code insertAt}.
+     */
+    static byte[] patchChunkOffsets(Mp4Box moov, long insertAt, long oldOffset, long oldSize) {
+        List<Mp4Box> stcoTables = moov.findAll("stco");
+        List<Mp4Box> co64Tables = moov.findAll("co64");
+
+        // Decide on widening with the unwidened size; widening only grows the shift further, which is safe
+        long newSize = moov.size();
+        boolean widen = false;
+        for (Mp4Box stco : stcoTables) {
+            ByteBuffer table = ByteBuffer.wrap(stco.getPayload());
+            int count = table.getInt(4);
+            for (int i = 0; i < count; i++) {
+                long offset = Integer.toUnsignedLong(table.getInt(8 + 4 * i));
+                if (shift(offset, insertAt, oldOffset, oldSize, newSize) > MAX_UINT32) {
+                    widen = true;
+                    break;
+                }
+            }
+        }
+        if (widen) {
+            for (Mp4Box stco : stcoTables) {
+                widenToCo64(stco);
+            }
+            co64Tables = moov.findAll("co64");
+            stcoTables = List.of();
+            newSize = moov.size();
+        }
+
+        for (Mp4Box stco : stcoTables) {
+            ByteBuffer table = ByteBuffer.wrap(stco.getPayload());
+            int count = table.getInt(4);
+            for (int i = 0; i < count; i++) {
+                long offset = Integer.toUnsignedLong(table.getInt(8 + 4 * i));
+                table.putInt(8 + 4 * i, (int) shift(offset, insertAt, oldOffset, oldSize, newSize));
+            }
+        }
+        for (Mp4Box co64 : co64Tables) {
+            ByteBuffer table = ByteBuffer.wrap(co64.getPayload());
+            int count = table.getInt(4);
+            for (int i = 0; i < count; i++) {
+                long offset = table.getLong(8 + 8 * i);
+                table.putLong(8 + 8 * i, shift(offset, insertAt, oldOffset, oldSize, newSize));
+            }
+        }
+        return moov.serialize();
+    }
+
+    private static long shift(long offset, long insertAt, long oldOffset, long oldSize, long newSize) {
+        if (offset >= oldOffset + oldSize) {
+            return offset - oldSize + newSize;
+        }
+        if (offset >= insertAt && offset < oldOffset) {
+            return offset + newSize;
+        }
+        return offset;
+    }
+
+    private static void widenToCo64(Mp4Box stco) {
+        ByteBuffer table = ByteBuffer.wrap(stco.getPayload());
+        int count = table.getInt(4);
+        ByteBuffer widened = ByteBuffer.allocate(8 + 8 * count);
+        widened.putInt(table.getInt(0));
+        widened.putInt(count);
+        for (int i = 0; i < count; i++) {
+            widened.putLong(Integer.toUnsignedLong(table.getInt(8 + 4 * i)));
+        }
+        stco.setType("co64");
+        stco.setPayload(widened.array());
+    }
+}
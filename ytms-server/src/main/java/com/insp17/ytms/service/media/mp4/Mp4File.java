@@ -0,0 +1,119 @@
+package com.insp17.ytms.service.media.mp4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the box layout of a stored MP4/MOV through ranged reads, so only box headers and the
+ * {@code moov} box are fetched, never the media data.
+ */
+public class Mp4File {
+
+    private static final int MAX_TOP_LEVEL_BOXES = 1000;
+
+    @FunctionalInterface
+    public interface RangeSource {
+        InputStream open(long offset, long length) throws IOException;
+    }
+
+    public record TopLevelBox(String type, long offset, long size) {
+        public long end() {
+            return offset + size;
+        }
+    }
+
+    private final RangeSource source;
+    private final long size;
+    private List<TopLevelBox> boxes;
+
+    public Mp4File(RangeSource source, long size) {
+        this.source = source;
+        this.size = size;
+    }
+
+    /**
+     * Top-level boxes in file order; one small ranged read per box. Returns an empty list if the file
+     * doesn't look like an ISO BMFF file.
+     */
+    public List<TopLevelBox> topLevelBoxes() throws IOException {
+        if (boxes != null) {
+            return boxes;
+        }
+        List<TopLevelBox> found = new ArrayList<>();
+        long position = 0;
+        while (position + 8 <= size && found.size() < MAX_TOP_LEVEL_BOXES) {
+            ByteBuffer header = ByteBuffer.wrap(read(position, (int) Math.min(16, size - position)));
+            long boxSize = Integer.toUnsignedLong(header.getInt(0));
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            if (!isBoxType(type)) {
+                return boxes = List.of();
+            }
+            if (boxSize == 1) {
+                if (header.capacity() < 16) {
+                    return boxes = List.of();
+                }
+                boxSize = header.getLong(8);
+            } else if (boxSize == 0) {
+                boxSize = size - position;
+            }
+            if (boxSize < 8 || position + boxSize > size) {
+                return boxes = List.of();
+            }
+            found.add(new TopLevelBox(type, position, boxSize));
+            position += boxSize;
+        }
+        return boxes = List.copyOf(found);
+    }
+
+    public TopLevelBox find(String type) throws IOException {
+        for (TopLevelBox box : topLevelBoxes()) {
+            if (box.type().equals(type)) {
+                return box;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads and parses the {@code moov} box, or returns null if there is none or it exceeds {@code maxBytes}.
+     */
+    public Mp4Box readMoov(int maxBytes) throws IOException {
+        TopLevelBox moov = find("moov");
+        if (moov == null || moov.size() > maxBytes) {
+            return null;
+        }
+        return Mp4Box.parse(read(moov.offset(), (int) moov.size()));
+    }
+
+    public byte[] read(long offset, int length) throws IOException {
+        try (InputStream inputStream = source.open(offset, length)) {
+            byte[] data = inputStream.readNBytes(length);
+            if (data.length != length) {
+                throw new IOException("Unexpected end of file at " + (offset + data.length));
+            }
+            return data;
+        }
+    }
+
+    public InputStream open(long offset, long length) throws IOException {
+        return source.open(offset, length);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    private static boolean isBoxType(String type) {
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c < 0x20 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
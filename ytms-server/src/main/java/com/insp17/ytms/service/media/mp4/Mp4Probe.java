@@ -0,0 +1,221 @@
+package com.insp17.ytms.service.media.mp4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads duration, resolution, codec and a keyframe index out of a parsed {@code moov} box. Keyframe
+ * times come from the decode timeline ({@code stts}); byte offsets are resolved through the
+ * sample-to-chunk, sample size and chunk offset tables, so the result points at the first byte of
+ * each keyframe in the stored file.
+ */
+public class Mp4Probe {
+
+    // Intra-only footage makes every frame a sync sample; one entry per interval is plenty for seeking
+    private static final long MIN_KEYFRAME_SPACING_MS = 1000;
+    private static final int MAX_KEYFRAMES = 100_000;
+
+    public record Keyframe(long timeMs, long offset) {
+    }
+
+    public static class Result {
+        private final Long durationMs;
+        private final Integer width;
+        private final Integer height;
+        private final String codec;
+        private final List<Keyframe> keyframes;
+
+        public Result(Long durationMs, Integer width, Integer height, String codec, List<Keyframe> keyframes) {
+            this.durationMs = durationMs;
+            this.width = width;
+            this.height = height;
+            this.codec = codec;
+            this.keyframes = keyframes;
+        }
+
+        public Long getDurationMs() {
+            return durationMs;
+        }
+
+        public Integer getWidth() {
+            return width;
+        }
+
+        public Integer getHeight() {
+            return height;
+        }
+
+        public String getCodec() {
+            return codec;
+        }
+
+        public List<Keyframe> getKeyframes() {
+            return keyframes;
+        }
+    }
+
+    private Mp4Probe() {
+    }
+
+    public static Result probe(Mp4Box moov) {
+        Long durationMs = null;
+        Mp4Box mvhd = moov.child("mvhd");
+        if (mvhd != null) {
+            durationMs = movieDuration(ByteBuffer.wrap(mvhd.getPayload()));
+        }
+
+        Mp4Box video = null;
+        for (Mp4Box trak : moov.findAll("trak")) {
+            if ("vide".equals(handlerType(trak))) {
+                video = trak;
+                break;
+            }
+        }
+        if (video == null) {
+            return new Result(durationMs, null, null, null, List.of());
+        }
+
+        Integer width = null;
+        Integer height = null;
+        Mp4Box tkhd = video.child("tkhd");
+        if (tkhd != null && tkhd.getPayload().length >= 8) {
+            ByteBuffer payload = ByteBuffer.wrap(tkhd.getPayload());
+            // 16.16 fixed point, the last two fields of the box
+            width = payload.getInt(payload.capacity() - 8) >>> 16;
+            height = payload.getInt(payload.capacity() - 4) >>> 16;
+        }
+
+        Mp4Box mdia = video.child("mdia");
+        Mp4Box mdhd = mdia.child("mdhd");
+        Mp4Box stbl = mdia.child("minf") == null ? null : mdia.child("minf").child("stbl");
+        if (mdhd == null || stbl == null) {
+            return new Result(durationMs, width, height, null, List.of());
+        }
+
+        ByteBuffer mediaHeader = ByteBuffer.wrap(mdhd.getPayload());
+        long timescale = Integer.toUnsignedLong(mediaHeader.getInt(mediaHeader.get(0) == 1 ? 20 : 12));
+        if (durationMs == null || durationMs == 0) {
+            long duration = mediaHeader.get(0) == 1 ? mediaHeader.getLong(24) : Integer.toUnsignedLong(mediaHeader.getInt(16));
+            durationMs = timescale == 0 ? null : duration * 1000 / timescale;
+        }
+
+        String codec = sampleEntryFormat(stbl.child("stsd"));
+        List<Keyframe> keyframes = timescale == 0 ? List.of() : keyframes(stbl, timescale);
+        return new Result(durationMs, width, height, codec, keyframes);
+    }
+
+    private static Long movieDuration(ByteBuffer mvhd) {
+        long timescale;
+        long duration;
+        if (mvhd.get(0) == 1) {
+            timescale = Integer.toUnsignedLong(mvhd.getInt(20));
+            duration = mvhd.getLong(24);
+        } else {
+            timescale = Integer.toUnsignedLong(mvhd.getInt(12));
+            duration = Integer.toUnsignedLong(mvhd.getInt(16));
+        }
+        return timescale == 0 ? null : duration * 1000 / timescale;
+    }
+
+    private static String handlerType(Mp4Box trak) {
+        Mp4Box mdia = trak.child("mdia");
+        Mp4Box hdlr = mdia == null ? null : mdia.child("hdlr");
+        if (hdlr == null || hdlr.getPayload().length < 12) {
+            return null;
+        }
+        return new String(hdlr.getPayload(), 8, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    // e.g. avc1, hvc1, mp4v, apcn
+    private static String sampleEntryFormat(Mp4Box stsd) {
+        if (stsd == null || stsd.getPayload().length < 16) {
+            return null;
+        }
+        return new String(stsd.getPayload(), 12, 4, StandardCharsets.ISO_8859_1).trim();
+    }
+
+    private static List<Keyframe> keyframes(Mp4Box stbl, long timescale) {
+        Mp4Box stts = stbl.child("stts");
+        Mp4Box stsc = stbl.child("stsc");
+        Mp4Box stsz = stbl.child("stsz");
+        Mp4Box stss = stbl.child("stss");
+        Mp4Box stco = stbl.child("stco");
+        Mp4Box co64 = stbl.child("co64");
+        if (stts == null || stsc == null || stsz == null || (stco == null && co64 == null)) {
+            return List.of();
+        }
+
+        ByteBuffer times = ByteBuffer.wrap(stts.getPayload());
+        ByteBuffer chunksToSamples = ByteBuffer.wrap(stsc.getPayload());
+        ByteBuffer sizes = ByteBuffer.wrap(stsz.getPayload());
+        ByteBuffer sync = stss == null ? null : ByteBuffer.wrap(stss.getPayload());
+        ByteBuffer offsets = ByteBuffer.wrap(co64 != null ? co64.getPayload() : stco.getPayload());
+        boolean wideOffsets = co64 != null;
+
+        int timeEntries = times.getInt(4);
+        int stscEntries = chunksToSamples.getInt(4);
+        int fixedSize = sizes.getInt(4);
+        long sampleCount = Integer.toUnsignedLong(sizes.getInt(8));
+        int syncCount = sync == null ? 0 : sync.getInt(4);
+        int chunkCount = offsets.getInt(4);
+
+        List<Keyframe> keyframes = new ArrayList<>();
+        long lastKeptMs = Long.MIN_VALUE;
+
+        // Decode-time cursor over stts
+        int timeEntry = 0;
+        long remainingInTimeEntry = timeEntries > 0 ? Integer.toUnsignedLong(times.getInt(8)) : 0;
+        long decodeTime = 0;
+
+        int syncIndex = 0;
+        int stscIndex = 0;
+        long sample = 1;
+        for (int chunk = 1; chunk <= chunkCount && sample <= sampleCount; chunk++) {
+            while (stscIndex + 1 < stscEntries && chunksToSamples.getInt(8 + 12 * (stscIndex + 1)) <= chunk) {
+                stscIndex++;
+            }
+            long samplesInChunk = Integer.toUnsignedLong(chunksToSamples.getInt(8 + 12 * stscIndex + 4));
+            long offset = wideOffsets ? offsets.getLong(8 + 8 * (chunk - 1))
+                    : Integer.toUnsignedLong(offsets.getInt(8 + 4 * (chunk - 1)));
+
+            for (long i = 0; i < samplesInChunk && sample <= sampleCount; i++, sample++) {
+                boolean isSync;
+                if (sync == null) {
+                    isSync = true;
+                } else {
+                    while (syncIndex < syncCount && Integer.toUnsignedLong(sync.getInt(8 + 4 * syncIndex)) < sample) {
+                        syncIndex++;
+                    }
+                    isSync = syncIndex < syncCount && Integer.toUnsignedLong(sync.getInt(8 + 4 * syncIndex)) == sample;
+                }
+
+                if (isSync) {
+                    long timeMs = decodeTime * 1000 / timescale;
+                    if (keyframes.isEmpty() || timeMs - lastKeptMs >= MIN_KEYFRAME_SPACING_MS) {
+                        keyframes.add(new Keyframe(timeMs, offset));
+                        lastKeptMs = timeMs;
+                        if (keyframes.size() >= MAX_KEYFRAMES) {
+                            return keyframes;
+                        }
+                    }
+                }
+
+                offset += fixedSize != 0 ? Integer.toUnsignedLong(fixedSize)
+                        : Integer.toUnsignedLong(sizes.getInt(12 + 4 * (int) (sample - 1)));
+
+                // Advance the decode clock past this sample
+                while (remainingInTimeEntry == 0 && timeEntry + 1 < timeEntries) {
+                    timeEntry++;
+                    remainingInTimeEntry = Integer.toUnsignedLong(times.getInt(8 + 8 * timeEntry));
+                }
+                if (remainingInTimeEntry > 0) {
+                    decodeTime += Integer.toUnsignedLong(times.getInt(8 + 8 * timeEntry + 4));
+                    remainingInTimeEntry--;
+                }
+            }
+        }
+        return keyframes;
+    }
+}
@@ -0,0 +1,68 @@
+package com.insp17.ytms.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams a byte range of a stored object chunk by chunk through {@link MediaChunkCache},
+ * so repeated reads of the same region are served from memory instead of the origin.
+ */
+public class CachedRangeInputStream extends InputStream {
+
+    private final MediaChunkCache cache;
+    private final MediaChunkCache.ChunkLoader loader;
+    private final String url;
+    private final long generation;
+    private final int chunkSize;
+    private final MediaChunkCache.Scratch scratch = new MediaChunkCache.Scratch();
+    private final byte[] single = new byte[1];
+
+    private long position;
+    private long remaining;
+
+    public CachedRangeInputStream(MediaChunkCache cache, MediaChunkCache.ChunkLoader loader,
+                                  String url, long generation, long start, long length) {
+        this.cache = cache;
+        this.loader = loader;
+        this.url = url;
+        this.generation = generation;
+        this.chunkSize = cache.getChunkSize();
+        this.position = start;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        long chunkIndex = position / chunkSize;
+        int offsetInChunk = (int) (position % chunkSize);
+        int wanted = (int) Math.min(Math.min(len, remaining), chunkSize - offsetInChunk);
+
+        MediaChunkCache.ChunkKey key = new MediaChunkCache.ChunkKey(url, generation, chunkIndex);
+        int n = cache.read(key, offsetInChunk, b, off, wanted, loader, scratch);
+        if (n <= 0) {
+            throw new IOException("Unexpected end of object " + url + " at byte " + position);
+        }
+
+        position += n;
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+}
@@ -0,0 +1,234 @@
+package com.insp17.ytms.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of fixed-size media chunks kept in direct (off-heap) memory.
+ * <p>
+ * The byte budget is carved into equally sized slots that live in a handful of direct
+ * {@link ByteBuffer} slabs, allocated on first use and reused forever after, so a busy
+ * cache produces no garbage for the collector. Entries are evicted in least-recently-used order.
+ */
+@Component
+public class MediaChunkCache {
+
+    private static final int SLOTS_PER_SLAB = 64;
+
+    /**
+     * Fills {@code target} (positioned at 0, limited to the chunk size) with the bytes of one chunk
+     * and returns how many bytes were written.
+     */
+    @FunctionalInterface
+    public interface ChunkLoader {
+        int load(long chunkIndex, ByteBuffer target) throws IOException;
+    }
+
+    public record ChunkKey(String url, long generation, long index) {
+    }
+
+    private record Slot(int index, int length) {
+    }
+
+    /**
+     * A reader's own buffer for chunks that couldn't get a slot. It keeps the last such chunk, so the
+     * reader consumes it to the end without reloading it on every read.
+     */
+    public static final class Scratch {
+        private ByteBuffer buffer;
+        private ChunkKey key;
+        private int length;
+    }
+
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int maxSlots;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<ChunkKey, Slot> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final List<ByteBuffer> slabs = new CopyOnWriteArrayList<>();
+    private int allocatedSlots = 0;
+    private long cachedBytes = 0;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public MediaChunkCache(@Value("${media.cache.memory.enabled:true}") boolean enabled,
+                           @Value("${media.cache.chunk-size:1048576}") int chunkSize,
+                           @Value("${media.cache.memory.max-bytes:268435456}") long maxBytes,
+                           MeterRegistry meterRegistry) {
+        this.chunkSize = chunkSize;
+        this.maxSlots = enabled ? (int) Math.min(Integer.MAX_VALUE, maxBytes / chunkSize) : 0;
+        this.enabled = maxSlots > 0;
+
+        this.hits = Counter.builder("ytms.media.chunk.cache.hits").tag("tier", "memory").register(meterRegistry);
+        this.misses = Counter.builder("ytms.media.chunk.cache.misses").tag("tier", "memory").register(meterRegistry);
+        this.evictions = Counter.builder("ytms.media.chunk.cache.evictions").tag("tier", "memory").register(meterRegistry);
+        Gauge.builder("ytms.media.chunk.cache.bytes", this, MediaChunkCache::getCachedBytes)
+                .tag("tier", "memory")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Copies up to {@code len} bytes of the chunk starting at {@code offsetInChunk} into {@code dst},
+     * loading the chunk through {@code loader} on a miss. When no slot is free the chunk is loaded into
+     * {@code scratch} instead. Returns -1 when the offset is past the chunk end.
+     */
+    public int read(ChunkKey key, int offsetInChunk, byte[] dst, int off, int len, ChunkLoader loader,
+                    Scratch scratch) throws IOException {
+        if (key.equals(scratch.key)) {
+            return copy(scratch, offsetInChunk, dst, off, len);
+        }
+        int copied = copyIfPresent(key, offsetInChunk, dst, off, len);
+        if (copied != Integer.MIN_VALUE) {
+            hits.increment();
+            return copied;
+        }
+        misses.increment();
+
+        int slotIndex = reserveSlot();
+        if (slotIndex < 0) {
+            // Every slot is being filled by other readers; serve this chunk without caching it.
+            if (scratch.buffer == null) {
+                scratch.buffer = ByteBuffer.allocate(chunkSize);
+            }
+            scratch.key = null;
+            scratch.length = loader.load(key.index(), scratch.buffer.clear());
+            scratch.key = key;
+            return copy(scratch, offsetInChunk, dst, off, len);
+        }
+
+        int length;
+        try {
+            ByteBuffer target = slotView(slotIndex);
+            length = loader.load(key.index(), target);
+        } catch (IOException | RuntimeException e) {
+            releaseSlot(slotIndex);
+            throw e;
+        }
+
+        return publishAndCopy(key, new Slot(slotIndex, length), offsetInChunk, dst, off, len);
+    }
+
+    private int copyIfPresent(ChunkKey key, int offsetInChunk, byte[] dst, int off, int len) {
+        lock.lock();
+        try {
+            Slot slot = entries.get(key);
+            return slot == null ? Integer.MIN_VALUE : copy(slot, offsetInChunk, dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Publishing and copying under one lock hold keeps the chunk from being evicted in between.
+    private int publishAndCopy(ChunkKey key, Slot slot, int offsetInChunk, byte[] dst, int off, int len) {
+        lock.lock();
+        try {
+            Slot existing = entries.get(key);
+            if (existing != null) {
+                // Another reader loaded the same chunk concurrently; keep theirs.
+                freeSlots.push(slot.index());
+                return copy(existing, offsetInChunk, dst, off, len);
+            }
+            entries.put(key, slot);
+            cachedBytes += slot.length();
+            return copy(slot, offsetInChunk, dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int copy(Slot slot, int offsetInChunk, byte[] dst, int off, int len) {
+        if (offsetInChunk >= slot.length()) {
+            return -1;
+        }
+        int n = Math.min(len, slot.length() - offsetInChunk);
+        ByteBuffer view = slotView(slot.index());
+        view.position(offsetInChunk);
+        view.get(dst, off, n);
+        return n;
+    }
+
+    private static int copy(Scratch scratch, int offsetInChunk, byte[] dst, int off, int len) {
+        if (offsetInChunk >= scratch.length) {
+            return -1;
+        }
+        int n = Math.min(len, scratch.length - offsetInChunk);
+        scratch.buffer.get(offsetInChunk, dst, off, n);
+        return n;
+    }
+
+    /**
+     * Takes a slot out of circulation for filling: a free one, a freshly allocated one,
+     * or the least recently used entry's. Returns -1 if none can be taken right now.
+     */
+    private int reserveSlot() {
+        lock.lock();
+        try {
+            if (!freeSlots.isEmpty()) {
+                return freeSlots.pop();
+            }
+            if (allocatedSlots < maxSlots) {
+                if (allocatedSlots % SLOTS_PER_SLAB == 0) {
+                    int slotsInSlab = Math.min(SLOTS_PER_SLAB, maxSlots - allocatedSlots);
+                    slabs.add(ByteBuffer.allocateDirect(slotsInSlab * chunkSize));
+                }
+                return allocatedSlots++;
+            }
+
+            Iterator<Map.Entry<ChunkKey, Slot>> eldest = entries.entrySet().iterator();
+            if (!eldest.hasNext()) {
+                return -1;
+            }
+            Slot evicted = eldest.next().getValue();
+            eldest.remove();
+            cachedBytes -= evicted.length();
+            evictions.increment();
+            return evicted.index();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot(int slotIndex) {
+        lock.lock();
+        try {
+            freeSlots.push(slotIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer slotView(int slotIndex) {
+        ByteBuffer slab = slabs.get(slotIndex / SLOTS_PER_SLAB);
+        int offset = (slotIndex % SLOTS_PER_SLAB) * chunkSize;
+        return slab.duplicate().position(offset).limit(offset + chunkSize).slice();
+    }
+}
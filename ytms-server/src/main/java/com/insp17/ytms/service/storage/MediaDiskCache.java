@@ -0,0 +1,306 @@
+package com.insp17.ytms.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Local SSD tier behind {@link MediaChunkCache}. Chunks are stored one per file and read back through
+ * memory mapping, so they survive restarts and don't have to be refetched from the bucket.
+ * <p>
+ * Crash safety: a chunk is written to a temp file, forced to disk and atomically renamed before it is
+ * recorded in an append-only index journal. On startup the journal is replayed, entries whose file is
+ * missing or truncated are dropped, stray files are removed and the journal is rewritten atomically in
+ * LRU order.
+ */
+@Component
+public class MediaDiskCache {
+
+    private static final String JOURNAL_NAME = "index.journal";
+    private static final String CHUNK_SUFFIX = ".chunk";
+
+    private final boolean enabled;
+    private final Path root;
+    private final long maxBytes;
+    private final Executor writeExecutor;
+
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long cachedBytes = 0;
+    private FileChannel journal;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public MediaDiskCache(@Value("${media.cache.disk.enabled:false}") boolean enabled,
+                          @Value("${media.cache.disk.path:${java.io.tmpdir}/ytms-media-cache}") String path,
+                          @Value("${media.cache.disk.max-bytes:21474836480}") long maxBytes,
+                          @Qualifier("mediaCacheWriteExecutor") Executor writeExecutor,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.root = Paths.get(path);
+        this.maxBytes = maxBytes;
+        this.writeExecutor = writeExecutor;
+
+        this.hits = Counter.builder("ytms.media.chunk.cache.hits").tag("tier", "disk").register(meterRegistry);
+        this.misses = Counter.builder("ytms.media.chunk.cache.misses").tag("tier", "disk").register(meterRegistry);
+        this.evictions = Counter.builder("ytms.media.chunk.cache.evictions").tag("tier", "disk").register(meterRegistry);
+        Gauge.builder("ytms.media.chunk.cache.bytes", this, MediaDiskCache::getCachedBytes)
+                .tag("tier", "disk")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(root);
+        loadJournal();
+        removeStrayFiles();
+        rewriteJournal();
+        journal = FileChannel.open(root.resolve(JOURNAL_NAME), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        System.out.println("Media disk cache ready at " + root + " with " + entries.size() + " chunks (" + cachedBytes + " bytes)");
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+            rewriteJournal();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Copies the cached chunk into {@code target} and returns its length, or -1 if the chunk isn't on disk.
+     */
+    public int read(MediaChunkCache.ChunkKey key, ByteBuffer target) {
+        if (!enabled) {
+            return -1;
+        }
+
+        String name = fileName(key);
+        Long length;
+        synchronized (this) {
+            length = entries.get(name);
+        }
+        if (length == null) {
+            misses.increment();
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(root.resolve(name + CHUNK_SUFFIX), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            target.put(mapped);
+            hits.increment();
+            return length.intValue();
+        } catch (IOException | RuntimeException e) {
+            // The file vanished or is unreadable: forget it and fall back to the origin.
+            System.err.println("Dropping unreadable media cache chunk " + name + ": " + e.getMessage());
+            synchronized (this) {
+                remove(name);
+            }
+            misses.increment();
+            return -1;
+        }
+    }
+
+    /**
+     * Schedules a copy of {@code data} (position to limit) to be persisted. Best effort: the write is
+     * skipped if the writer queue is full.
+     */
+    public void offer(MediaChunkCache.ChunkKey key, ByteBuffer data) {
+        if (!enabled) {
+            return;
+        }
+        String name = fileName(key);
+        synchronized (this) {
+            if (entries.containsKey(name)) {
+                return;
+            }
+        }
+
+        byte[] copy = new byte[data.remaining()];
+        data.get(copy);
+        writeExecutor.execute(() -> write(name, copy));
+    }
+
+    private void write(String name, byte[] data) {
+        Path target = root.resolve(name + CHUNK_SUFFIX);
+        Path temp = root.resolve(name + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            synchronized (this) {
+                if (journal == null || entries.containsKey(name)) {
+                    return;
+                }
+                appendJournal("P " + name + " " + data.length);
+                entries.put(name, (long) data.length);
+                cachedBytes += data.length;
+                evictOverBudget();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to persist media cache chunk " + name + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void evictOverBudget() throws IOException {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            cachedBytes -= entry.getValue();
+            appendJournal("D " + entry.getKey());
+            Files.deleteIfExists(root.resolve(entry.getKey() + CHUNK_SUFFIX));
+            evictions.increment();
+        }
+    }
+
+    private void remove(String name) {
+        Long length = entries.remove(name);
+        if (length == null) {
+            return;
+        }
+        cachedBytes -= length;
+        try {
+            appendJournal("D " + name);
+            Files.deleteIfExists(root.resolve(name + CHUNK_SUFFIX));
+        } catch (IOException e) {
+            System.err.println("Failed to remove media cache chunk " + name + ": " + e.getMessage());
+        }
+    }
+
+    private void appendJournal(String line) throws IOException {
+        if (journal == null) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+    }
+
+    private void loadJournal() throws IOException {
+        Path journalPath = root.resolve(JOURNAL_NAME);
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+
+        List<String> lines = Files.readAllLines(journalPath, StandardCharsets.US_ASCII);
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            if (parts.length == 3 && parts[0].equals("P")) {
+                try {
+                    entries.put(parts[1], Long.parseLong(parts[2]));
+                } catch (NumberFormatException ignored) {
+                    // A torn final line from a crash mid-append; the chunk file is cleaned up below.
+                }
+            } else if (parts.length == 2 && parts[0].equals("D")) {
+                entries.remove(parts[1]);
+            }
+        }
+
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            Path chunk = root.resolve(entry.getKey() + CHUNK_SUFFIX);
+            if (!Files.isRegularFile(chunk) || Files.size(chunk) != entry.getValue()) {
+                it.remove();
+            } else {
+                cachedBytes += entry.getValue();
+            }
+        }
+    }
+
+    private void removeStrayFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (fileName.equals(JOURNAL_NAME)) {
+                    continue;
+                }
+                boolean indexed = fileName.endsWith(CHUNK_SUFFIX)
+                        && entries.containsKey(fileName.substring(0, fileName.length() - CHUNK_SUFFIX.length()));
+                if (!indexed) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void rewriteJournal() throws IOException {
+        Path temp = root.resolve(JOURNAL_NAME + ".tmp");
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            content.append("P ").append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, root.resolve(JOURNAL_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String fileName(MediaChunkCache.ChunkKey key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((key.url() + "#" + key.generation() + "#" + key.index())
+                    .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
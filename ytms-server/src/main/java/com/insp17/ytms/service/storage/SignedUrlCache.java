@@ -0,0 +1,155 @@
+package com.insp17.ytms.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reuses V4 signed URLs while they still have enough validity left, so listing pages don't pay for an
+ * RSA signature per object per request.
+ * <p>
+ * A cached URL is handed out as long as at least {@code min-remaining} of its lifetime is left. Once it
+ * drops below {@code refresh-ahead} a replacement is signed in the background while callers keep getting
+ * the current one. The map is bounded and evicts least recently used entries.
+ */
+@Component
+public class SignedUrlCache {
+
+    /**
+     * Produces a freshly signed URL valid for {@code ttlMinutes}.
+     */
+    @FunctionalInterface
+    public interface Signer {
+        String sign(long ttlMinutes);
+    }
+
+    public record Key(String bucket, String objectName, String method) {
+    }
+
+    private record Entry(String url, long expiresAtMillis) {
+    }
+
+    private final long ttlMinutes;
+    private final long minRemainingMillis;
+    private final long refreshAheadMillis;
+    private final int maxEntries;
+    private final Executor refreshExecutor;
+
+    private final Map<Key, Entry> entries;
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter refreshes;
+
+    public SignedUrlCache(@Value("${media.signed-url.ttl-minutes:60}") long ttlMinutes,
+                          @Value("${media.signed-url.min-remaining-minutes:10}") long minRemainingMinutes,
+                          @Value("${media.signed-url.refresh-ahead-minutes:20}") long refreshAheadMinutes,
+                          @Value("${media.signed-url.max-entries:10000}") int maxEntries,
+                          @Qualifier("signedUrlRefreshExecutor") Executor refreshExecutor,
+                          MeterRegistry meterRegistry) {
+        this.ttlMinutes = ttlMinutes;
+        this.minRemainingMillis = TimeUnit.MINUTES.toMillis(minRemainingMinutes);
+        this.refreshAheadMillis = TimeUnit.MINUTES.toMillis(Math.max(refreshAheadMinutes, minRemainingMinutes));
+        this.maxEntries = maxEntries;
+        this.refreshExecutor = refreshExecutor;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > SignedUrlCache.this.maxEntries;
+            }
+        };
+
+        this.hits = Counter.builder("ytms.signed.url.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("ytms.signed.url.cache.misses").register(meterRegistry);
+        this.refreshes = Counter.builder("ytms.signed.url.cache.refreshes").register(meterRegistry);
+        Gauge.builder("ytms.signed.url.cache.size", this, SignedUrlCache::size).register(meterRegistry);
+    }
+
+    public long getTtlMinutes() {
+        return ttlMinutes;
+    }
+
+    /**
+     * Every URL handed out by {@link #get} stays valid for at least this long.
+     */
+    public long getMinRemainingMillis() {
+        return minRemainingMillis;
+    }
+
+    public String get(Key key, Signer signer) {
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null) {
+            long remaining = entry.expiresAtMillis() - now;
+            if (remaining >= minRemainingMillis) {
+                hits.increment();
+                if (remaining < refreshAheadMillis) {
+                    refreshInBackground(key, signer);
+                }
+                return entry.url();
+            }
+        }
+
+        misses.increment();
+        return signAndStore(key, signer);
+    }
+
+    public void invalidate(String bucket, String objectName) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.bucket().equals(bucket) && key.objectName().equals(objectName));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void refreshInBackground(Key key, Signer signer) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    signAndStore(key, signer);
+                    refreshes.increment();
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to refresh signed URL for " + key.objectName() + ": " + e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Refresh queue is full; a later hit will try again.
+            refreshing.remove(key);
+        }
+    }
+
+    private String signAndStore(Key key, Signer signer) {
+        // Take the timestamp before signing so the recorded expiry is never later than the real one.
+        long signedAt = System.currentTimeMillis();
+        String url = signer.sign(ttlMinutes);
+        Entry entry = new Entry(url, signedAt + TimeUnit.MINUTES.toMillis(ttlMinutes));
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return url;
+    }
+}
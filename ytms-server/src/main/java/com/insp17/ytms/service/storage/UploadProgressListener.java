@@ -0,0 +1,38 @@
+package com.insp17.ytms.service.storage;
+
+/**
+ * Receives progress of a server-side upload as bytes are handed to the storage backend.
+ * {@code totalBytes} is -1 when the length isn't known up front.
+ */
+@FunctionalInterface
+public interface UploadProgressListener {
+
+    UploadProgressListener NONE = (bytesTransferred, totalBytes) -> {
+    };
+
+    void onProgress(long bytesTransferred, long totalBytes);
+
+    /**
+     * Logs at every {@code stepPercent} boundary, or every 100MB when the total is unknown.
+     */
+    static UploadProgressListener logging(String label, int stepPercent) {
+        return new UploadProgressListener() {
+            private long nextReport = 0;
+
+            @Override
+            public void onProgress(long bytesTransferred, long totalBytes) {
+                if (bytesTransferred < nextReport) {
+                    return;
+                }
+                if (totalBytes > 0) {
+                    System.out.println("Uploading " + label + ": " + (bytesTransferred * 100 / totalBytes) + "% ("
+                            + bytesTransferred + "/" + totalBytes + " bytes)");
+                    nextReport = bytesTransferred + Math.max(1, totalBytes * stepPercent / 100);
+                } else {
+                    System.out.println("Uploading " + label + ": " + bytesTransferred + " bytes");
+                    nextReport = bytesTransferred + 100L * 1024 * 1024;
+                }
+            }
+        };
+    }
+}
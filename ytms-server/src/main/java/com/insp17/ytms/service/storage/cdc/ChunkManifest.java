@@ -0,0 +1,110 @@
+package com.insp17.ytms.service.storage.cdc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of content chunks that make up one stored file. Serialized as plain text:
+ * a header line, the content type and total size, then one {@code <sha256> <length>} line per chunk.
+ */
+public class ChunkManifest {
+
+    private static final String HEADER = "ytms-cdc-manifest 1";
+
+    public record Chunk(String sha256, int length) {
+    }
+
+    private final String contentType;
+    private final List<Chunk> chunks;
+    private final long[] offsets;
+    private final long size;
+
+    // Set when loaded from storage; used as the validator for HTTP caching
+    private final Long generation;
+    private final long lastModified;
+
+    public ChunkManifest(String contentType, List<Chunk> chunks, Long generation, long lastModified) {
+        this.contentType = contentType;
+        this.chunks = Collections.unmodifiableList(new ArrayList<>(chunks));
+        this.offsets = new long[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i + 1] = offsets[i] + chunks.get(i).length();
+        }
+        this.size = offsets[chunks.size()];
+        this.generation = generation;
+        this.lastModified = lastModified;
+    }
+
+    public String serialize() {
+        StringBuilder text = new StringBuilder(HEADER).append('\n')
+                .append("content-type ").append(contentType == null ? "application/octet-stream" : contentType).append('\n')
+                .append("size ").append(size).append('\n');
+        for (Chunk chunk : chunks) {
+            text.append(chunk.sha256()).append(' ').append(chunk.length()).append('\n');
+        }
+        return text.toString();
+    }
+
+    public static ChunkManifest parse(String text, Long generation, long lastModified) {
+        String[] lines = text.split("\n");
+        if (lines.length < 3 || !lines[0].equals(HEADER)) {
+            throw new IllegalArgumentException("Not a chunk manifest");
+        }
+        String contentType = lines[1].substring("content-type ".length());
+        long declaredSize = Long.parseLong(lines[2].substring("size ".length()));
+
+        List<Chunk> chunks = new ArrayList<>(lines.length - 3);
+        for (int i = 3; i < lines.length; i++) {
+            String[] parts = lines[i].split(" ");
+            chunks.add(new Chunk(parts[0], Integer.parseInt(parts[1])));
+        }
+
+        ChunkManifest manifest = new ChunkManifest(contentType, chunks, generation, lastModified);
+        if (manifest.getSize() != declaredSize) {
+            throw new IllegalArgumentException("Manifest size " + declaredSize + " does not match its chunks");
+        }
+        return manifest;
+    }
+
+    /**
+     * Index of the chunk containing byte {@code position}.
+     */
+    public int chunkIndexAt(long position) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public long chunkOffset(int index) {
+        return offsets[index];
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Long getGeneration() {
+        return generation;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,342 @@
+package com.insp17.ytms.service.storage.cdc;
+
+import com.google.cloud.ReadChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Stores files in the bucket as content-defined chunks plus a manifest. Each unique chunk is kept once
+ * under {@code cdc/chunks/<sha256>}, so a re-export that only differs in a few places adds just the chunks
+ * that changed. Files are addressed as {@code cdc://<bucket>/<manifest object>}.
+ * <p>
+ * Manifests are immutable once written. Deleting a file only removes its manifest; chunks that no manifest
+ * references any more are reclaimed by the orphan sweep.
+ */
+public class ChunkedObjectStore {
+
+    public static final String URL_PREFIX = "cdc://";
+    public static final String CHUNKS_PREFIX = "cdc/chunks/";
+    public static final String MANIFESTS_PREFIX = "cdc/manifests/";
+    public static final String MATERIALIZED_PREFIX = "cdc/materialized/";
+
+    private static final int MAX_CACHED_MANIFESTS = 256;
+    private static final int MAX_COMPOSE_SOURCES = 32;
+    private static final int READ_CHUNK_SIZE = 2 * 1024 * 1024;
+
+    public static class StoreResult {
+        private final String url;
+        private final long size;
+        private final int chunkCount;
+        private final long newBytes;
+
+        public StoreResult(String url, long size, int chunkCount, long newBytes) {
+            this.url = url;
+            this.size = size;
+            this.chunkCount = chunkCount;
+            this.newBytes = newBytes;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public long getNewBytes() {
+            return newBytes;
+        }
+    }
+
+    private final Storage storage;
+    private final String bucketName;
+    private final int minChunkSize;
+    private final int avgChunkSize;
+    private final int maxChunkSize;
+
+    private final Map<String, ChunkManifest> manifestCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChunkManifest> eldest) {
+            return size() > MAX_CACHED_MANIFESTS;
+        }
+    };
+
+    public ChunkedObjectStore(Storage storage, String bucketName, int minChunkSize, int avgChunkSize, int maxChunkSize) {
+        this.storage = storage;
+        this.bucketName = bucketName;
+        this.minChunkSize = minChunkSize;
+        this.avgChunkSize = avgChunkSize;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    public static boolean isChunkedUrl(String url) {
+        return url != null && url.startsWith(URL_PREFIX);
+    }
+
+    /**
+     * Splits {@code inputStream} into chunks, uploads the ones the bucket doesn't have yet and writes the manifest.
+     */
+    public StoreResult store(InputStream inputStream, String contentType) throws IOException {
+        FastCdcChunker chunker = new FastCdcChunker(inputStream, minChunkSize, avgChunkSize, maxChunkSize);
+        List<ChunkManifest.Chunk> chunks = new ArrayList<>();
+        long newBytes = 0;
+
+        byte[] data;
+        while ((data = chunker.nextChunk()) != null) {
+            String sha256 = sha256(data);
+            if (putChunkIfAbsent(sha256, data)) {
+                newBytes += data.length;
+            }
+            chunks.add(new ChunkManifest.Chunk(sha256, data.length));
+        }
+
+        ChunkManifest manifest = new ChunkManifest(contentType, chunks, null, 0);
+        String manifestName = MANIFESTS_PREFIX + UUID.randomUUID() + ".manifest";
+        storage.create(BlobInfo.newBuilder(BlobId.of(bucketName, manifestName)).setContentType("text/plain").build(),
+                manifest.serialize().getBytes(StandardCharsets.UTF_8),
+                Storage.BlobTargetOption.doesNotExist());
+
+        return new StoreResult(URL_PREFIX + bucketName + "/" + manifestName, manifest.getSize(), chunks.size(), newBytes);
+    }
+
+    // Returns true if the chunk was uploaded, false if an identical one was already stored.
+    private boolean putChunkIfAbsent(String sha256, byte[] data) {
+        BlobId chunkId = BlobId.of(bucketName, CHUNKS_PREFIX + sha256);
+        // Check first so known chunks aren't sent over the wire just to be rejected by the precondition
+        if (storage.get(chunkId, Storage.BlobGetOption.fields(Storage.BlobField.SIZE)) != null) {
+            // Touching the metadata bumps its update time and metageneration, so the orphan sweep's grace period
+            // covers a chunk being reused before its manifest is written, and a sweep that listed it earlier
+            // fails its delete precondition
+            try {
+                storage.update(BlobInfo.newBuilder(chunkId)
+                        .setMetadata(Map.of("last-referenced", Instant.now().toString()))
+                        .build());
+                return false;
+            } catch (StorageException e) {
+                if (e.getCode() != 404) {
+                    throw e;
+                }
+                // Swept between the check and the touch; store it again
+            }
+        }
+        try {
+            storage.create(BlobInfo.newBuilder(chunkId).setContentType("application/octet-stream").build(), data,
+                    Storage.BlobTargetOption.doesNotExist());
+            return true;
+        } catch (StorageException e) {
+            if (e.getCode() == 412) {
+                // Written concurrently by another upload with the same content
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    public ChunkManifest load(String url) throws IOException {
+        synchronized (manifestCache) {
+            ChunkManifest cached = manifestCache.get(url);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Blob blob = storage.get(BlobId.of(bucketName, manifestName(url)));
+        if (blob == null) {
+            throw new IOException("Chunk manifest not found: " + url);
+        }
+        long lastModified = blob.getUpdateTimeOffsetDateTime() != null
+                ? blob.getUpdateTimeOffsetDateTime().toInstant().toEpochMilli()
+                : 0L;
+        ChunkManifest manifest;
+        try {
+            manifest = ChunkManifest.parse(new String(blob.getContent(), StandardCharsets.UTF_8), blob.getGeneration(), lastModified);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt chunk manifest " + url + ": " + e.getMessage(), e);
+        }
+
+        synchronized (manifestCache) {
+            manifestCache.put(url, manifest);
+        }
+        return manifest;
+    }
+
+    /**
+     * Streams bytes [start, start + length) by reading the covered chunks one after another.
+     */
+    public InputStream openRange(ChunkManifest manifest, long start, long length) {
+        long end = start + length;
+        int first = manifest.chunkIndexAt(start);
+
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private int index = first;
+
+            @Override
+            public boolean hasMoreElements() {
+                return index < manifest.getChunks().size() && manifest.chunkOffset(index) < end;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!hasMoreElements()) {
+                    throw new NoSuchElementException();
+                }
+                long chunkStart = manifest.chunkOffset(index);
+                ChunkManifest.Chunk chunk = manifest.getChunks().get(index++);
+                try {
+                    ReadChannel reader = storage.reader(BlobId.of(bucketName, CHUNKS_PREFIX + chunk.sha256()));
+                    reader.setChunkSize(READ_CHUNK_SIZE);
+                    reader.seek(Math.max(0, start - chunkStart));
+                    reader.limit(Math.min(chunk.length(), end - chunkStart));
+                    return Channels.newInputStream(reader);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open chunk " + chunk.sha256(), e);
+                }
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    /**
+     * Fills {@code target} with bytes [start, end), crossing chunk boundaries as needed. Used as the
+     * loader for the media chunk caches. Returns the number of bytes read.
+     */
+    public int readRange(ChunkManifest manifest, long start, long end, ByteBuffer target) throws IOException {
+        int total = 0;
+        for (int index = manifest.chunkIndexAt(start);
+             index < manifest.getChunks().size() && manifest.chunkOffset(index) < end && target.hasRemaining();
+             index++) {
+            long chunkStart = manifest.chunkOffset(index);
+            ChunkManifest.Chunk chunk = manifest.getChunks().get(index);
+            try (ReadChannel reader = storage.reader(BlobId.of(bucketName, CHUNKS_PREFIX + chunk.sha256()))) {
+                reader.setChunkSize(READ_CHUNK_SIZE);
+                reader.seek(Math.max(0, start - chunkStart));
+                reader.limit(Math.min(chunk.length(), end - chunkStart));
+                while (target.hasRemaining()) {
+                    int n = reader.read(target);
+                    if (n < 0) {
+                        break;
+                    }
+                    total += n;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the name of a plain object holding the whole file, composing it from the chunks on first use.
+     * Browsers can only download through signed URLs, which need a real object. Compose runs inside GCS,
+     * so no bytes pass through the server; the copies live under {@link #MATERIALIZED_PREFIX} and are
+     * meant to be expired by a bucket lifecycle rule.
+     */
+    public String materialize(String url) throws IOException {
+        ChunkManifest manifest = load(url);
+        String targetName = materializedName(url);
+
+        Blob existing = storage.get(BlobId.of(bucketName, targetName), Storage.BlobGetOption.fields(Storage.BlobField.SIZE));
+        if (existing != null && existing.getSize() != null && existing.getSize() == manifest.getSize()) {
+            return targetName;
+        }
+
+        List<String> sources = new ArrayList<>(manifest.getChunks().size());
+        for (ChunkManifest.Chunk chunk : manifest.getChunks()) {
+            sources.add(CHUNKS_PREFIX + chunk.sha256());
+        }
+
+        // Compose takes at most 32 sources, so large files are stitched together in rounds
+        List<String> intermediates = new ArrayList<>();
+        try {
+            int round = 0;
+            while (sources.size() > MAX_COMPOSE_SOURCES) {
+                List<String> next = new ArrayList<>();
+                for (int i = 0; i < sources.size(); i += MAX_COMPOSE_SOURCES) {
+                    String name = targetName + ".tmp/" + round + "-" + (i / MAX_COMPOSE_SOURCES);
+                    compose(sources.subList(i, Math.min(sources.size(), i + MAX_COMPOSE_SOURCES)), name, manifest.getContentType());
+                    intermediates.add(name);
+                    next.add(name);
+                }
+                sources = next;
+                round++;
+            }
+            compose(sources, targetName, manifest.getContentType());
+        } finally {
+            if (!intermediates.isEmpty()) {
+                List<BlobId> ids = new ArrayList<>(intermediates.size());
+                for (String name : intermediates) {
+                    ids.add(BlobId.of(bucketName, name));
+                }
+                storage.delete(ids);
+            }
+        }
+
+        System.out.println("Materialized " + url + " as " + targetName + " (" + manifest.getSize() + " bytes)");
+        return targetName;
+    }
+
+    private void compose(List<String> sources, String targetName, String contentType) {
+        Storage.ComposeRequest.Builder compose = Storage.ComposeRequest.newBuilder()
+                .setTarget(BlobInfo.newBuilder(BlobId.of(bucketName, targetName)).setContentType(contentType).build());
+        for (String source : sources) {
+            compose.addSource(source);
+        }
+        storage.compose(compose.build());
+    }
+
+    /**
+     * Removes the manifest and any materialized copy. Chunks are left for the orphan sweep because
+     * other manifests may still reference them.
+     */
+    public void delete(String url) {
+        String manifestName = manifestName(url);
+        synchronized (manifestCache) {
+            manifestCache.remove(url);
+        }
+        storage.delete(List.of(BlobId.of(bucketName, manifestName), BlobId.of(bucketName, materializedName(url))));
+    }
+
+    public String materializedName(String url) {
+        return MATERIALIZED_PREFIX + manifestName(url).substring(MANIFESTS_PREFIX.length());
+    }
+
+    private String manifestName(String url) {
+        String expectedPrefix = URL_PREFIX + bucketName + "/";
+        if (!url.startsWith(expectedPrefix) || !url.substring(expectedPrefix.length()).startsWith(MANIFESTS_PREFIX)) {
+            throw new IllegalArgumentException("Invalid chunked object URL: " + url);
+        }
+        return url.substring(expectedPrefix.length());
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.insp17.ytms.service.storage.cdc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Content-defined chunking with the FastCDC algorithm (gear rolling hash, cut-point skipping and
+ * normalized chunking). Cut points depend only on the bytes around them, so inserting or removing data
+ * early in a file shifts a few chunk boundaries instead of every one after it, and near-identical
+ * re-exports share most of their chunks.
+ */
+public class FastCdcChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: chunk boundaries must be identical across restarts and servers
+        SplittableRandom random = new SplittableRandom(0x7974_6d73_6364_6331L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final InputStream in;
+    private final int minSize;
+    private final int avgSize;
+    private final long maskSmall;
+    private final long maskLarge;
+    private final byte[] buffer;
+    private int filled = 0;
+    private boolean eof = false;
+
+    public FastCdcChunker(InputStream in, int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize || Integer.bitCount(avgSize) != 1) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= avg <= max with avg a power of two");
+        }
+        this.in = in;
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.buffer = new byte[maxSize];
+
+        // Normalization level 2: harder to cut before the average size, easier after it.
+        // Masks use the high bits, which depend on the last 64 bytes rather than just the last few.
+        int bits = Integer.numberOfTrailingZeros(avgSize);
+        this.maskSmall = highBits(bits + 2);
+        this.maskLarge = highBits(bits - 2);
+    }
+
+    /**
+     * Returns the next chunk, or null once the stream is exhausted.
+     */
+    public byte[] nextChunk() throws IOException {
+        fill();
+        if (filled == 0) {
+            return null;
+        }
+
+        int cut = findCut(filled);
+        byte[] chunk = Arrays.copyOf(buffer, cut);
+        System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+        filled -= cut;
+        return chunk;
+    }
+
+    private void fill() throws IOException {
+        while (!eof && filled < buffer.length) {
+            int n = in.read(buffer, filled, buffer.length - filled);
+            if (n < 0) {
+                eof = true;
+            } else {
+                filled += n;
+            }
+        }
+    }
+
+    private int findCut(int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        long fingerprint = 0;
+        int normal = Math.min(avgSize, length);
+        int i = minSize;
+        for (; i < normal; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+            if ((fingerprint & maskSmall) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < length; i++) {
+            fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+            if ((fingerprint & maskLarge) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    private static long highBits(int count) {
+        return count <= 0 ? 0 : -1L << (64 - Math.min(count, 63));
+    }
+}
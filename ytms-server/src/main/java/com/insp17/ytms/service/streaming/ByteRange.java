@@ -0,0 +1,15 @@
+package com.insp17.ytms.service.streaming;
+
+/**
+ * An inclusive byte range resolved against a known resource length.
+ */
+public record ByteRange(long start, long end) {
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+}
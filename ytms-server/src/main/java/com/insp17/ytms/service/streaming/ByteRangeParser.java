@@ -0,0 +1,112 @@
+package com.insp17.ytms.service.streaming;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses {@code Range: bytes=...} headers (RFC 9110 section 14.1.2): first-last, open-ended first-
+ * and suffix -length specs, comma separated.
+ */
+public final class ByteRangeParser {
+
+    private static final Pattern RANGE_SPEC = Pattern.compile("\\s*(\\d*)\\s*-\\s*(\\d*)\\s*");
+    private static final String BYTES_UNIT = "bytes=";
+
+    private ByteRangeParser() {
+    }
+
+    public enum Outcome {
+        /** No usable Range header; serve the full representation. */
+        IGNORE,
+        /** Syntactically valid but no range overlaps the resource. */
+        UNSATISFIABLE,
+        SATISFIABLE
+    }
+
+    public record Result(Outcome outcome, List<ByteRange> ranges, boolean openEnded) {
+    }
+
+    /**
+     * Resolves the header against {@code length}. Overlapping and adjacent ranges are merged, and
+     * requests with more than {@code maxRanges} specs are ignored rather than served piecemeal.
+     * {@code openEnded} is set when a single range was requested as {@code first-}.
+     */
+    public static Result parse(String header, long length, int maxRanges) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return new Result(Outcome.IGNORE, List.of(), false);
+        }
+
+        String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+        if (specs.length > maxRanges) {
+            return new Result(Outcome.IGNORE, List.of(), false);
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        boolean openEnded = false;
+        for (String spec : specs) {
+            Matcher matcher = RANGE_SPEC.matcher(spec);
+            if (!matcher.matches()) {
+                return new Result(Outcome.IGNORE, List.of(), false);
+            }
+            String first = matcher.group(1);
+            String last = matcher.group(2);
+
+            try {
+                if (first.isEmpty()) {
+                    if (last.isEmpty()) {
+                        return new Result(Outcome.IGNORE, List.of(), false);
+                    }
+                    long suffix = Long.parseLong(last);
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (end < start) {
+                        return new Result(Outcome.IGNORE, List.of(), false);
+                    }
+                    if (start < length) {
+                        ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+                        openEnded = last.isEmpty();
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Positions too large for a long can't be satisfied by any object we store.
+                return new Result(Outcome.IGNORE, List.of(), false);
+            }
+        }
+
+        if (ranges.isEmpty()) {
+            return new Result(Outcome.UNSATISFIABLE, List.of(), false);
+        }
+
+        List<ByteRange> merged = merge(ranges);
+        return new Result(Outcome.SATISFIABLE, merged, openEnded && specs.length == 1);
+    }
+
+    private static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() == 1) {
+            return ranges;
+        }
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
@@ -0,0 +1,105 @@
+package com.insp17.ytms.service.streaming;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how fast each client actually drains media responses and turns that into a size cap for
+ * open-ended ranges ({@code bytes=N-}). A player on a fast link gets a few seconds' worth of large
+ * responses, a slow one gets small responses and starts playing sooner.
+ */
+@Component
+public class ClientThroughputEstimator {
+
+    private static final double SMOOTHING = 0.3;
+    private static final long MIN_SAMPLE_BYTES = 256 * 1024;
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+
+    private final long minBytes;
+    private final long maxBytes;
+    private final long initialBytes;
+    private final double targetSeconds;
+
+    private final ConcurrentHashMap<String, Double> bytesPerSecond = new ConcurrentHashMap<>();
+
+    public ClientThroughputEstimator(@Value("${media.range.open-ended.min-bytes:1048576}") long minBytes,
+                                     @Value("${media.range.open-ended.max-bytes:16777216}") long maxBytes,
+                                     @Value("${media.range.open-ended.initial-bytes:2097152}") long initialBytes,
+                                     @Value("${media.range.open-ended.target-seconds:4}") double targetSeconds) {
+        this.minBytes = minBytes;
+        this.maxBytes = maxBytes;
+        this.initialBytes = initialBytes;
+        this.targetSeconds = targetSeconds;
+    }
+
+    public long openEndedCap(String clientKey) {
+        Double rate = bytesPerSecond.get(clientKey);
+        if (rate == null) {
+            return initialBytes;
+        }
+        long cap = (long) (rate * targetSeconds);
+        return Math.max(minBytes, Math.min(maxBytes, cap));
+    }
+
+    public void record(String clientKey, long bytes, long elapsedNanos) {
+        if (bytes < MIN_SAMPLE_BYTES || elapsedNanos <= 0) {
+            return;
+        }
+        if (bytesPerSecond.size() > MAX_TRACKED_CLIENTS) {
+            bytesPerSecond.clear();
+        }
+        double sample = bytes / (elapsedNanos / 1_000_000_000.0);
+        bytesPerSecond.merge(clientKey, sample, (old, latest) -> old + SMOOTHING * (latest - old));
+    }
+
+    /**
+     * Wraps a response body so the time between the first read and close is recorded for {@code clientKey}.
+     * The servlet copy loop blocks on the client, so that time reflects what the client can absorb.
+     */
+    public InputStream track(String clientKey, InputStream body) {
+        return new FilterInputStream(body) {
+            private long bytes = 0;
+            private long startedAt = 0;
+
+            @Override
+            public int read() throws IOException {
+                markStart();
+                int b = super.read();
+                if (b >= 0) {
+                    bytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int len) throws IOException {
+                markStart();
+                int n = super.read(buffer, off, len);
+                if (n > 0) {
+                    bytes += n;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (startedAt != 0) {
+                    record(clientKey, bytes, System.nanoTime() - startedAt);
+                    startedAt = 0;
+                }
+            }
+
+            private void markStart() {
+                if (startedAt == 0) {
+                    startedAt = System.nanoTime();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,337 @@
+package com.insp17.ytms.service.streaming;
+
+import com.insp17.ytms.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Builds byte-range aware responses for stored media: single ranges, suffix ranges,
+ * multipart/byteranges and capped open-ended ranges. Bodies are streamed lazily from storage.
+ * <p>
+ * Responses carry an ETag and Last-Modified taken from the stored object, so conditional requests
+ * (If-None-Match, If-Modified-Since, If-Range) and HEAD are answered from metadata alone.
+ */
+@Service
+public class MediaStreamingService {
+
+    // Request attributes understood by Tomcat's NIO connector (mirrors org.apache.catalina.Globals.SENDFILE_*)
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final int MAX_RANGES = 16;
+    private static final String SEEK_OFFSET_HEADER = "X-Seek-Offset";
+    private static final String SEEK_TIME_HEADER = "X-Seek-Time-Ms";
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ClientThroughputEstimator throughputEstimator;
+
+    public ResponseEntity<Resource> buildResponse(HttpServletRequest request,
+                                                  FileStorageService.StoredObject object,
+                                                  String filename,
+                                                  String contentType,
+                                                  String clientKey) {
+        ResponseEntity<Resource> notModified = checkNotModified(request, object);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        long fileLength = object.getSize();
+        // A stale If-Range means the client's partial copy is outdated; send the whole thing.
+        String rangeHeader = isIfRangeSatisfied(request, object) ? request.getHeader(HttpHeaders.RANGE) : null;
+        ByteRangeParser.Result parsed = ByteRangeParser.parse(rangeHeader, fileLength, MAX_RANGES);
+
+        switch (parsed.outcome()) {
+            case UNSATISFIABLE:
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength)
+                        .headers(validatorHeaders(object))
+                        .build();
+            case IGNORE:
+                return singleRange(request, object, new ByteRange(0, fileLength - 1), false, filename, contentType, clientKey);
+            default:
+                break;
+        }
+
+        if (parsed.ranges().size() > 1) {
+            return multipleRanges(request, object, parsed.ranges(), filename, contentType, clientKey);
+        }
+
+        ByteRange range = parsed.ranges().get(0);
+        if (parsed.openEnded()) {
+            // Don't commit to the whole remainder of a multi-GB file; the player will ask for more.
+            long cap = throughputEstimator.openEndedCap(clientKey);
+            range = new ByteRange(range.start(), Math.min(range.end(), range.start() + cap - 1));
+        }
+        return singleRange(request, object, range, true, filename, contentType, clientKey);
+    }
+
+    /**
+     * Answers a time-based seek ({@code ?t=}) like a plain request, adding the keyframe's byte offset and time
+     * as {@code X-Seek-Offset} / {@code X-Seek-Time-Ms}. A 206 is only allowed in reply to a Range request,
+     * and bytes from mid-{@code mdat} aren't playable without the moov anyway, so the client issues its own
+     * {@code Range: bytes=<offset>-} once it has the index.
+     */
+    public ResponseEntity<Resource> buildSeekResponse(HttpServletRequest request,
+                                                      FileStorageService.StoredObject object,
+                                                      long offset,
+                                                      long timeMs,
+                                                      String filename,
+                                                      String contentType,
+                                                      String clientKey) {
+        ResponseEntity<Resource> response = buildResponse(request, object, filename, contentType, clientKey);
+        if (offset < 0 || offset >= object.getSize()) {
+            return response;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(SEEK_OFFSET_HEADER, String.valueOf(offset));
+        headers.set(SEEK_TIME_HEADER, String.valueOf(timeMs));
+        return ResponseEntity.status(response.getStatusCode()).headers(headers).body(response.getBody());
+    }
+
+    private ResponseEntity<Resource> singleRange(HttpServletRequest request,
+                                                 FileStorageService.StoredObject object,
+                                                 ByteRange range,
+                                                 boolean partial,
+                                                 String filename,
+                                                 String contentType,
+                                                 String clientKey) {
+        HttpHeaders headers = baseHeaders(object, filename);
+        headers.add(HttpHeaders.CONTENT_TYPE, contentType);
+        headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(range.length()));
+        if (partial) {
+            headers.add(HttpHeaders.CONTENT_RANGE, range.toContentRange(object.getSize()));
+        }
+
+        HttpStatus status = partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK;
+        if (isHead(request)) {
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        System.out.println("Streaming " + filename + " range: " + range.start() + "-" + range.end() + "/" + object.getSize() + " (" + range.length() + " bytes)");
+
+        // Local files go out through Tomcat's sendfile, so the bytes never enter the JVM heap.
+        if (fileStorageService.isInternalUrl(object.getUrl()) && isSendfileSupported(request)) {
+            try {
+                request.setAttribute(SENDFILE_FILENAME_ATTR,
+                        fileStorageService.resolveInternalPath(object.getUrl()).toFile().getCanonicalPath());
+                request.setAttribute(SENDFILE_START_ATTR, range.start());
+                request.setAttribute(SENDFILE_END_ATTR, range.end() + 1);
+                return ResponseEntity.status(status).headers(headers).build();
+            } catch (IOException e) {
+                System.err.println("Sendfile unavailable for " + filename + ", falling back to streaming: " + e.getMessage());
+            }
+        }
+
+        InputStreamResource resource = new InputStreamResource(() -> throughputEstimator.track(clientKey,
+                fileStorageService.openRange(object, range.start(), range.length())));
+
+        return ResponseEntity.status(status)
+                .headers(headers)
+                .body(resource);
+    }
+
+    private ResponseEntity<Resource> multipleRanges(HttpServletRequest request,
+                                                    FileStorageService.StoredObject object,
+                                                    List<ByteRange> ranges,
+                                                    String filename,
+                                                    String contentType,
+                                                    String clientKey) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.toContentRange(object.getSize()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        HttpHeaders headers = baseHeaders(object, filename);
+        headers.add(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+        headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(contentLength));
+
+        if (isHead(request)) {
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).build();
+        }
+
+        System.out.println("Streaming " + filename + " as " + ranges.size() + " ranges (" + contentLength + " bytes)");
+
+        InputStreamResource resource = new InputStreamResource(() -> throughputEstimator.track(clientKey,
+                new SequenceInputStream(new MultipartRangeEnumeration(object, ranges, partHeaders, closing))));
+
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(resource);
+    }
+
+    /**
+     * Returns a 304 response when the client's cached copy is still current, otherwise null.
+     * If-None-Match takes precedence over If-Modified-Since (RFC 9110 section 13.2.2).
+     */
+    public ResponseEntity<Resource> checkNotModified(HttpServletRequest request, FileStorageService.StoredObject object) {
+        boolean notModified;
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            notModified = matchesAny(ifNoneMatch, object.getETag());
+        } else {
+            long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+            notModified = ifModifiedSince >= 0 && object.getLastModified() > 0
+                    && object.getLastModified() / 1000 <= ifModifiedSince / 1000;
+        }
+
+        if (!notModified) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .headers(validatorHeaders(object))
+                .build();
+    }
+
+    /**
+     * ETag, Last-Modified and Cache-Control for a stored object. {@code no-cache} still lets the browser keep
+     * the bytes; it just has to revalidate, which now costs a metadata lookup and a 304.
+     */
+    public HttpHeaders validatorHeaders(FileStorageService.StoredObject object) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(object.getETag());
+        if (object.getLastModified() > 0) {
+            headers.setLastModified(object.getLastModified());
+        }
+        headers.add(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        return headers;
+    }
+
+    public boolean isHead(HttpServletRequest request) {
+        return "HEAD".equalsIgnoreCase(request.getMethod());
+    }
+
+    private boolean isIfRangeSatisfied(HttpServletRequest request, FileStorageService.StoredObject object) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        String trimmed = ifRange.trim();
+        if (trimmed.startsWith("\"") || trimmed.startsWith("W/")) {
+            // If-Range requires strong comparison, so weak tags never match.
+            return trimmed.equals(object.getETag());
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && object.getLastModified() > 0 && date / 1000 == object.getLastModified() / 1000;
+    }
+
+    private boolean matchesAny(String ifNoneMatch, String etag) {
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            // Unparseable dates are ignored, as if the header were absent.
+            return -1;
+        }
+    }
+
+    private HttpHeaders baseHeaders(FileStorageService.StoredObject object, String filename) {
+        HttpHeaders headers = validatorHeaders(object);
+        headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"");
+
+        // Important: Add CORS headers for video streaming
+        headers.add("Access-Control-Allow-Origin", "http://localhost:3000");
+        headers.add("Access-Control-Allow-Credentials", "true");
+        headers.add("Access-Control-Allow-Headers", "Range, Content-Range, Content-Length, If-Range, If-None-Match, If-Modified-Since");
+        headers.add("Access-Control-Expose-Headers", "Content-Range, Content-Length, Accept-Ranges, ETag, Last-Modified, "
+                + SEEK_OFFSET_HEADER + ", " + SEEK_TIME_HEADER);
+        return headers;
+    }
+
+    private boolean isSendfileSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR));
+    }
+
+    /**
+     * Yields part header, part body, part header, ... closing delimiter, opening each range from
+     * storage only when the previous part has been fully written.
+     */
+    private class MultipartRangeEnumeration implements Enumeration<InputStream> {
+        private final FileStorageService.StoredObject object;
+        private final Iterator<ByteRange> ranges;
+        private final Iterator<byte[]> partHeaders;
+        private final byte[] closing;
+        private ByteRange pendingBody;
+        private boolean closed = false;
+
+        MultipartRangeEnumeration(FileStorageService.StoredObject object, List<ByteRange> ranges,
+                                  List<byte[]> partHeaders, byte[] closing) {
+            this.object = object;
+            this.ranges = ranges.iterator();
+            this.partHeaders = partHeaders.iterator();
+            this.closing = closing;
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return pendingBody != null || ranges.hasNext() || !closed;
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (pendingBody != null) {
+                ByteRange range = pendingBody;
+                pendingBody = null;
+                try {
+                    return fileStorageService.openRange(object, range.start(), range.length());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (ranges.hasNext()) {
+                pendingBody = ranges.next();
+                return new ByteArrayInputStream(partHeaders.next());
+            }
+            closed = true;
+            return new ByteArrayInputStream(closing);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.insp17.ytms.service.upload;
+
+import com.insp17.ytms.service.FileStorageService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resumable, chunked uploads for the INTERNAL storage backend, modelled on the tus protocol.
+ * <p>
+ * A file is split into fixed-size chunks that may be sent in any order and in parallel. Each chunk is
+ * written in place into a preallocated file under {@code file.storage.path/.uploads}, optionally checked
+ * against an {@code Upload-Checksum}, and only then marked as received in a one-byte-per-chunk bitmap
+ * file. Both are forced to disk, so after a crash or a dropped connection the client asks which chunks
+ * are missing and resends only those. Sessions with no activity for {@code upload.resumable.session-ttl-hours}
+ * are deleted by a scheduled sweep, since the storage GC leaves {@code .uploads} alone.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final String UPLOADS_DIR = ".uploads";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public static class ChecksumMismatchException extends IOException {
+        public ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${upload.resumable.chunk-size:8388608}")
+    private int chunkSize;
+
+    @Value("${upload.resumable.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    private final ConcurrentHashMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    private Path uploadsDir;
+
+    @PostConstruct
+    public void init() {
+        uploadsDir = fileStorageService.getInternalStoragePath().resolve(UPLOADS_DIR);
+    }
+
+    public UploadSession create(Long ownerId, StreamingUploadService.MediaKind kind, String filename, String contentType,
+                                String folder, long length, String sha256) throws IOException {
+        if (kind == StreamingUploadService.MediaKind.VIDEO) {
+            fileStorageService.validateVideoHeaders(filename, contentType);
+        } else {
+            fileStorageService.validateAudioHeaders(filename, contentType);
+        }
+        long maxSize = kind == StreamingUploadService.MediaKind.VIDEO ? fileStorageService.getMaxVideoSize() : fileStorageService.getMaxAudioSize();
+        if (length <= 0 || length > maxSize) {
+            throw new IOException("Upload length must be between 1 and " + maxSize + " bytes");
+        }
+        if (folder == null || !folder.matches("[A-Za-z0-9_-]+")) {
+            throw new IOException("Invalid folder: " + folder);
+        }
+        if (sha256 != null && !sha256.matches("[0-9a-fA-F]{64}")) {
+            throw new IOException("sha256 must be 64 hex characters");
+        }
+
+        Files.createDirectories(uploadsDir);
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), ownerId, filename, contentType, folder,
+                length, chunkSize, sha256 != null ? sha256.toLowerCase() : null);
+
+        // Preallocate so chunks can be written at their final position in any order
+        try (FileChannel data = FileChannel.open(dataFile(session.getId()), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             FileChannel bitmap = FileChannel.open(bitmapFile(session.getId()), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            data.write(ByteBuffer.allocate(1), length - 1);
+            bitmap.write(ByteBuffer.allocate(session.getChunkCount()), 0);
+            bitmap.force(true);
+        }
+        writeInfo(session);
+        sessions.put(session.getId(), session);
+
+        System.out.println("Created resumable upload " + session.getId() + " for " + filename + " (" + length + " bytes, "
+                + session.getChunkCount() + " chunks)");
+        return session;
+    }
+
+    public UploadSession getSession(String uploadId, Long ownerId) throws IOException {
+        UploadSession session = sessions.get(uploadId);
+        if (session == null) {
+            session = load(uploadId);
+        }
+        if (session == null || !session.getOwnerId().equals(ownerId)) {
+            throw new RuntimeException("Upload not found");
+        }
+        return session;
+    }
+
+    /**
+     * Writes one chunk starting at {@code offset}, which must be chunk aligned. The body must contain the whole
+     * chunk. Returns the contiguous offset after the write.
+     */
+    public long writeChunk(UploadSession session, long offset, InputStream body, long contentLength, String uploadChecksum)
+            throws IOException {
+        if (offset < 0 || offset >= session.getLength() || offset % session.getChunkSize() != 0) {
+            throw new IllegalArgumentException("Upload-Offset must be a multiple of " + session.getChunkSize() + " within the file");
+        }
+        int chunkIndex = (int) (offset / session.getChunkSize());
+        long expected = Math.min(session.getChunkSize(), session.getLength() - offset);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new IllegalArgumentException("Chunk " + chunkIndex + " must be " + expected + " bytes");
+        }
+
+        MessageDigest digest = null;
+        String expectedChecksum = null;
+        if (uploadChecksum != null) {
+            String[] parts = uploadChecksum.trim().split(" ");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Upload-Checksum must be '<algorithm> <base64 digest>'");
+            }
+            digest = messageDigest(parts[0]);
+            expectedChecksum = parts[1];
+        }
+
+        try (FileChannel data = FileChannel.open(dataFile(session.getId()), StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long position = offset;
+            long remaining = expected;
+            while (remaining > 0) {
+                int n = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    throw new IOException("Chunk " + chunkIndex + " ended after " + (expected - remaining) + " of " + expected + " bytes");
+                }
+                if (digest != null) {
+                    digest.update(buffer, 0, n);
+                }
+                ByteBuffer slice = ByteBuffer.wrap(buffer, 0, n);
+                while (slice.hasRemaining()) {
+                    position += data.write(slice, position);
+                }
+                remaining -= n;
+            }
+            if (body.read() != -1) {
+                throw new IllegalArgumentException("Chunk " + chunkIndex + " is larger than " + expected + " bytes");
+            }
+
+            // The bytes stay where they are on a mismatch; the chunk simply isn't marked and gets resent
+            if (digest != null && !Base64.getEncoder().encodeToString(digest.digest()).equals(expectedChecksum)) {
+                throw new ChecksumMismatchException("Checksum mismatch for chunk " + chunkIndex);
+            }
+            data.force(false);
+        }
+
+        markReceived(session, chunkIndex);
+        return session.getOffset();
+    }
+
+    /**
+     * Moves a fully received upload into the storage folder, after checking its SHA-256 if one was declared.
+     */
+    public FileStorageService.FileUploadResult complete(UploadSession session) throws IOException {
+        List<Integer> missing = session.getMissingChunks();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Upload is missing " + missing.size() + " chunks");
+        }
+
+        Path data = dataFile(session.getId());
+        if (session.getSha256() != null) {
+            MessageDigest digest = messageDigest("sha256");
+            try (InputStream in = Files.newInputStream(data)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                }
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(session.getSha256())) {
+                abort(session);
+                throw new ChecksumMismatchException("SHA-256 of the assembled file does not match; upload discarded");
+            }
+        }
+
+        String filePath = session.getFolder() + "/" + fileStorageService.generateUniqueFilename(session.getFilename());
+        Path target = fileStorageService.getInternalStoragePath().resolve(filePath);
+        Files.createDirectories(target.getParent());
+        Files.move(data, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteSessionFiles(session.getId());
+        sessions.remove(session.getId());
+
+        System.out.println("Completed resumable upload " + session.getId() + " as " + filePath);
+        return new FileStorageService.FileUploadResult("/files/" + filePath, session.getFilename(), session.getLength());
+    }
+
+    public void abort(UploadSession session) throws IOException {
+        sessions.remove(session.getId());
+        Files.deleteIfExists(dataFile(session.getId()));
+        deleteSessionFiles(session.getId());
+    }
+
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval-ms:3600000}")
+    public void expireIdleSessions() {
+        if (uploadsDir == null || !Files.isDirectory(uploadsDir)) {
+            return;
+        }
+        // A session's last activity is the newest write to any of its files; stray files of half-created sessions count too
+        Map<String, FileTime> lastActivity = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadsDir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                if (dot <= 0) {
+                    continue;
+                }
+                String uploadId = name.substring(0, dot);
+                lastActivity.merge(uploadId, Files.getLastModifiedTime(file), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not scan resumable uploads: " + e.getMessage());
+            return;
+        }
+
+        FileTime cutoff = FileTime.from(Instant.now().minus(Duration.ofHours(sessionTtlHours)));
+        int expired = 0;
+        for (Map.Entry<String, FileTime> entry : lastActivity.entrySet()) {
+            if (entry.getValue().compareTo(cutoff) >= 0) {
+                continue;
+            }
+            String uploadId = entry.getKey();
+            sessions.remove(uploadId);
+            try {
+                Files.deleteIfExists(dataFile(uploadId));
+                Files.deleteIfExists(uploadsDir.resolve(uploadId + ".info.tmp"));
+                deleteSessionFiles(uploadId);
+                expired++;
+            } catch (IOException e) {
+                System.err.println("Could not delete abandoned upload " + uploadId + ": " + e.getMessage());
+            }
+        }
+        if (expired > 0) {
+            System.out.println("Expired " + expired + " resumable uploads idle for more than " + sessionTtlHours + " hours");
+        }
+    }
+
+    private void markReceived(UploadSession session, int chunkIndex) throws IOException {
+        synchronized (session) {
+            if (session.received.get(chunkIndex)) {
+                return;
+            }
+            try (FileChannel bitmap = FileChannel.open(bitmapFile(session.getId()), StandardOpenOption.WRITE)) {
+                bitmap.write(ByteBuffer.wrap(new byte[]{1}), chunkIndex);
+                bitmap.force(false);
+            }
+            session.received.set(chunkIndex);
+        }
+    }
+
+    private UploadSession load(String uploadId) throws IOException {
+        try {
+            UUID.fromString(uploadId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Path info = infoFile(uploadId);
+        if (!Files.exists(info)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(info, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        UploadSession session = new UploadSession(uploadId,
+                Long.parseLong(properties.getProperty("ownerId")),
+                properties.getProperty("filename"),
+                properties.getProperty("contentType"),
+                properties.getProperty("folder"),
+                Long.parseLong(properties.getProperty("length")),
+                Integer.parseInt(properties.getProperty("chunkSize")),
+                properties.getProperty("sha256"));
+
+        byte[] bitmap = Files.readAllBytes(bitmapFile(uploadId));
+        for (int i = 0; i < Math.min(bitmap.length, session.getChunkCount()); i++) {
+            if (bitmap[i] != 0) {
+                session.received.set(i);
+            }
+        }
+
+        UploadSession existing = sessions.putIfAbsent(uploadId, session);
+        return existing != null ? existing : session;
+    }
+
+    private void writeInfo(UploadSession session) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("ownerId", String.valueOf(session.getOwnerId()));
+        properties.setProperty("filename", session.getFilename());
+        properties.setProperty("contentType", session.getContentType());
+        properties.setProperty("folder", session.getFolder());
+        properties.setProperty("length", String.valueOf(session.getLength()));
+        properties.setProperty("chunkSize", String.valueOf(session.getChunkSize()));
+        if (session.getSha256() != null) {
+            properties.setProperty("sha256", session.getSha256());
+        }
+
+        Path temp = uploadsDir.resolve(session.getId() + ".info.tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, infoFile(session.getId()), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteSessionFiles(String uploadId) throws IOException {
+        Files.deleteIfExists(infoFile(uploadId));
+        Files.deleteIfExists(bitmapFile(uploadId));
+    }
+
+    private Path dataFile(String uploadId) {
+        return uploadsDir.resolve(uploadId + ".part");
+    }
+
+    private Path bitmapFile(String uploadId) {
+        return uploadsDir.resolve(uploadId + ".chunks");
+    }
+
+    private Path infoFile(String uploadId) {
+        return uploadsDir.resolve(uploadId + ".info");
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        String name = switch (algorithm.toLowerCase()) {
+            case "sha256" -> "SHA-256";
+            case "sha1" -> "SHA-1";
+            case "md5" -> "MD5";
+            default -> throw new IllegalArgumentException("Unsupported checksum algorithm: " + algorithm);
+        };
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(name + " not available", e);
+        }
+    }
+
+    public static class UploadSession {
+        private final String id;
+        private final Long ownerId;
+        private final String filename;
+        private final String contentType;
+        private final String folder;
+        private final long length;
+        private final int chunkSize;
+        private final String sha256;
+        private final BitSet received = new BitSet();
+
+        UploadSession(String id, Long ownerId, String filename, String contentType, String folder, long length,
+                      int chunkSize, String sha256) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.folder = folder;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.sha256 = sha256;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getOwnerId() {
+            return ownerId;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public int getChunkCount() {
+            return (int) ((length + chunkSize - 1) / chunkSize);
+        }
+
+        /**
+         * Bytes received contiguously from the start, i.e. the tus Upload-Offset.
+         */
+        public synchronized long getOffset() {
+            return Math.min(length, (long) received.nextClearBit(0) * chunkSize);
+        }
+
+        public synchronized List<Integer> getMissingChunks() {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = received.nextClearBit(0); i < getChunkCount(); i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return missing;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.insp17.ytms.service.upload;
+
+import com.insp17.ytms.service.FileStorageService;
+import com.insp17.ytms.service.storage.UploadProgressListener;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * Pipes a multipart upload from the request body straight into storage using the commons-fileupload
+ * streaming API, so the servlet container never spools the file to a temp file first.
+ * <p>
+ * The caller must not touch request parameters or parts before calling {@link #ingest}; doing so makes
+ * Tomcat parse (and spool) the whole multipart body.
+ */
+@Service
+public class StreamingUploadService {
+
+    public enum MediaKind {
+        VIDEO,
+        AUDIO
+    }
+
+    // Form fields sent alongside the file are small; anything bigger is not a legitimate request
+    private static final long MAX_FORM_FIELD_SIZE = 64 * 1024;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    public FileStorageService.FileUploadResult ingest(HttpServletRequest request, MediaKind kind, String folder)
+            throws IOException {
+        // FileUploadBase.isMultipartContent(RequestContext) drags in javax.servlet; the check is just this
+        String requestContentType = request.getContentType();
+        if (requestContentType == null || !requestContentType.toLowerCase().startsWith("multipart/")) {
+            throw new IOException("Request is not multipart/form-data");
+        }
+
+        JakartaRequestContext context = new JakartaRequestContext(request);
+        long maxSize = kind == MediaKind.VIDEO ? fileStorageService.getMaxVideoSize() : fileStorageService.getMaxAudioSize();
+
+        FileUpload upload = new FileUpload();
+        upload.setFileSizeMax(maxSize);
+        upload.setFileCountMax(16);
+
+        try {
+            FileItemIterator items = upload.getItemIterator(context);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (item.isFormField()) {
+                    try (InputStream field = item.openStream()) {
+                        if (field.readNBytes((int) MAX_FORM_FIELD_SIZE + 1).length > MAX_FORM_FIELD_SIZE) {
+                            throw new IOException("Form field " + item.getFieldName() + " is too large");
+                        }
+                    }
+                    continue;
+                }
+
+                String filename = item.getName();
+                String contentType = item.getContentType();
+                // Reject on the part headers alone, before a single byte reaches storage
+                if (kind == MediaKind.VIDEO) {
+                    fileStorageService.validateVideoHeaders(filename, contentType);
+                } else {
+                    fileStorageService.validateAudioHeaders(filename, contentType);
+                }
+
+                long declaredLength = request.getContentLengthLong();
+                try (PushbackInputStream body = new PushbackInputStream(item.openStream(), 1)) {
+                    int first = body.read();
+                    if (first == -1) {
+                        throw new IOException("File is empty");
+                    }
+                    body.unread(first);
+
+                    FileStorageService.FileUploadResult result = fileStorageService.uploadStream(body, filename, contentType, folder,
+                            withKnownTotal(UploadProgressListener.logging(filename, 10), declaredLength));
+                    System.out.println("Ingested " + filename + " to " + result.getUrl() + " (" + result.getSize() + " bytes)");
+                    return result;
+                }
+            }
+        } catch (FileUploadException e) {
+            throw new IOException("Malformed multipart request: " + e.getMessage(), e);
+        }
+
+        throw new IOException("No file part in request");
+    }
+
+    // The request Content-Length is an upper bound on the file size, which is good enough for progress logging
+    private UploadProgressListener withKnownTotal(UploadProgressListener delegate, long declaredLength) {
+        return (bytesTransferred, totalBytes) -> delegate.onProgress(bytesTransferred, totalBytes > 0 ? totalBytes : declaredLength);
+    }
+}
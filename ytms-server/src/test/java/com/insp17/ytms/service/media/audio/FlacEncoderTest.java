@@ -0,0 +1,313 @@
+package com.insp17.ytms.service.media.audio;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlacEncoderTest {
+
+    @Test
+    void roundTripsMono16Bit() throws Exception {
+        roundTrip(44100, 1, 16, 10_000);
+    }
+
+    @Test
+    void roundTripsStereo16Bit() throws Exception {
+        roundTrip(44100, 2, 16, 20_000);
+    }
+
+    @Test
+    void roundTripsMono24Bit() throws Exception {
+        roundTrip(48000, 1, 24, 10_000);
+    }
+
+    @Test
+    void roundTripsStereo24Bit() throws Exception {
+        roundTrip(96000, 2, 24, 20_000);
+    }
+
+    @Test
+    void roundTripsEmptyInput() throws Exception {
+        roundTrip(44100, 2, 16, 0);
+    }
+
+    private static void roundTrip(int sampleRate, int channels, int bitsPerSample, int frames) throws Exception {
+        int[] samples = signal(channels, bitsPerSample, frames);
+
+        Path file = Files.createTempFile("flac-encoder-test", ".flac");
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+                FlacEncoder encoder = new FlacEncoder(channel, sampleRate, channels, bitsPerSample);
+                // Odd write sizes so blocks straddle calls
+                int[] buffer = new int[1001 * channels];
+                for (int offset = 0; offset < frames; offset += 1001) {
+                    int count = Math.min(1001, frames - offset);
+                    System.arraycopy(samples, offset * channels, buffer, 0, count * channels);
+                    encoder.write(buffer, count);
+                }
+                size = encoder.finish();
+            }
+
+            byte[] flac = Files.readAllBytes(file);
+            assertEquals(size, flac.length);
+
+            FlacDecoder decoder = new FlacDecoder(flac);
+            int[] decoded = decoder.decode();
+            assertEquals(sampleRate, decoder.sampleRate);
+            assertEquals(channels, decoder.channels);
+            assertEquals(bitsPerSample, decoder.bitsPerSample);
+            assertEquals(frames, decoder.totalFrames);
+            assertArrayEquals(samples, decoded);
+            assertArrayEquals(md5(samples, bitsPerSample), decoder.md5);
+            if (frames > 0) {
+                assertTrue(flac.length < (long) samples.length * (bitsPerSample / 8), "FLAC output should be smaller than PCM");
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // A tone per channel with a little noise and a stretch of silence, so constant, fixed and verbatim subframes all show up
+    private static int[] signal(int channels, int bitsPerSample, int frames) {
+        Random random = new Random(bitsPerSample * 31L + channels);
+        long max = (1L << (bitsPerSample - 1)) - 1;
+        int[] samples = new int[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++) {
+                double value = i % 8192 < 1024 ? 0 : 0.5 * Math.sin(i * 0.03 * (c + 1)) + 0.01 * random.nextGaussian();
+                samples[i * channels + c] = (int) Math.max(-max - 1, Math.min(max, Math.round(value * max)));
+            }
+        }
+        return samples;
+    }
+
+    private static byte[] md5(int[] samples, int bitsPerSample) throws Exception {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        for (int sample : samples) {
+            for (int b = 0; b < bitsPerSample / 8; b++) {
+                md5.update((byte) (sample >> (8 * b)));
+            }
+        }
+        return md5.digest();
+    }
+
+    /**
+     * Minimal decoder for what {@link FlacEncoder} writes: fixed block size frames with constant, verbatim
+     * and fixed-predictor subframes, Rice residuals and every stereo decorrelation mode. Checks CRCs and
+     * frame numbering on the way.
+     */
+    private static final class FlacDecoder {
+
+        private final byte[] data;
+        private long position;
+
+        int sampleRate;
+        int channels;
+        int bitsPerSample;
+        long totalFrames;
+        final byte[] md5 = new byte[16];
+
+        FlacDecoder(byte[] data) {
+            this.data = data;
+        }
+
+        int[] decode() throws IOException {
+            if (bits(32) != 0x664C6143L) {
+                throw new IOException("Missing fLaC marker");
+            }
+            boolean last = false;
+            while (!last) {
+                last = bits(1) == 1;
+                int type = (int) bits(7);
+                int length = (int) bits(24);
+                long end = position + length * 8L;
+                if (type == 0) {
+                    bits(16 + 16 + 24 + 24);
+                    sampleRate = (int) bits(20);
+                    channels = (int) bits(3) + 1;
+                    bitsPerSample = (int) bits(5) + 1;
+                    totalFrames = bits(36);
+                    for (int i = 0; i < md5.length; i++) {
+                        md5[i] = (byte) bits(8);
+                    }
+                }
+                position = end;
+            }
+
+            int[] samples = new int[(int) totalFrames * channels];
+            int decodedFrames = 0;
+            long frameNumber = 0;
+            while (position / 8 < data.length) {
+                int frameStart = (int) (position / 8);
+                if (bits(15) != 0x7FFC || bits(1) != 0) {
+                    throw new IOException("Bad frame sync at " + frameStart);
+                }
+                int blockSizeCode = (int) bits(4);
+                bits(4);
+                int channelAssignment = (int) bits(4);
+                bits(3 + 1);
+                if (readUtf8Number() != frameNumber) {
+                    throw new IOException("Unexpected frame number in frame " + frameNumber);
+                }
+                int blockSize = switch (blockSizeCode) {
+                    case 6 -> (int) bits(8) + 1;
+                    case 7 -> (int) bits(16) + 1;
+                    default -> blockSizeCode >= 8 ? 256 << (blockSizeCode - 8) : 576 << (blockSizeCode - 2);
+                };
+                int headerCrc = crc(frameStart, (int) (position / 8), 8, 0x07);
+                if (bits(8) != headerCrc) {
+                    throw new IOException("Header CRC mismatch in frame " + frameNumber);
+                }
+
+                int[][] block = new int[channels][];
+                for (int c = 0; c < channels; c++) {
+                    boolean side = (channelAssignment == 8 && c == 1) || (channelAssignment == 9 && c == 0)
+                            || (channelAssignment == 10 && c == 1);
+                    block[c] = subframe(blockSize, side ? bitsPerSample + 1 : bitsPerSample);
+                }
+                for (int i = 0; i < blockSize; i++) {
+                    switch (channelAssignment) {
+                        case 8 -> block[1][i] = block[0][i] - block[1][i];
+                        case 9 -> block[0][i] = block[0][i] + block[1][i];
+                        case 10 -> {
+                            int mid = block[0][i] << 1 | (block[1][i] & 1);
+                            int side = block[1][i];
+                            block[0][i] = (mid + side) >> 1;
+                            block[1][i] = (mid - side) >> 1;
+                        }
+                        default -> {
+                        }
+                    }
+                }
+
+                position = (position + 7) & ~7L;
+                int frameCrc = crc(frameStart, (int) (position / 8), 16, 0x8005);
+                if (bits(16) != frameCrc) {
+                    throw new IOException("Frame CRC mismatch in frame " + frameNumber);
+                }
+                for (int i = 0; i < blockSize; i++) {
+                    for (int c = 0; c < channels; c++) {
+                        samples[(decodedFrames + i) * channels + c] = block[c][i];
+                    }
+                }
+                decodedFrames += blockSize;
+                frameNumber++;
+            }
+            if (decodedFrames != totalFrames) {
+                throw new IOException("Decoded " + decodedFrames + " frames, STREAMINFO says " + totalFrames);
+            }
+            return samples;
+        }
+
+        private int[] subframe(int blockSize, int sampleBits) throws IOException {
+            bits(1);
+            int type = (int) bits(6);
+            if (bits(1) != 0) {
+                throw new IOException("Unexpected wasted bits");
+            }
+            int[] samples = new int[blockSize];
+            if (type == 0) {
+                Arrays.fill(samples, (int) signedBits(sampleBits));
+                return samples;
+            }
+            if (type == 1) {
+                for (int i = 0; i < blockSize; i++) {
+                    samples[i] = (int) signedBits(sampleBits);
+                }
+                return samples;
+            }
+            if ((type & 0x38) != 8 || (type & 7) > 4) {
+                throw new IOException("Unsupported subframe type " + type);
+            }
+
+            int order = type & 7;
+            for (int i = 0; i < order; i++) {
+                samples[i] = (int) signedBits(sampleBits);
+            }
+            int parameterBits = bits(2) == 0 ? 4 : 5;
+            int partitionOrder = (int) bits(4);
+            int index = order;
+            for (int partition = 0; partition < 1 << partitionOrder; partition++) {
+                int k = (int) bits(parameterBits);
+                int count = (blockSize >> partitionOrder) - (partition == 0 ? order : 0);
+                for (int j = 0; j < count; j++) {
+                    long quotient = 0;
+                    while (bits(1) == 0) {
+                        quotient++;
+                    }
+                    long value = quotient << k | bits(k);
+                    samples[index++] = (int) ((value >>> 1) ^ -(value & 1));
+                }
+            }
+            for (int i = order; i < blockSize; i++) {
+                long prediction = switch (order) {
+                    case 0 -> 0;
+                    case 1 -> samples[i - 1];
+                    case 2 -> 2L * samples[i - 1] - samples[i - 2];
+                    case 3 -> 3L * samples[i - 1] - 3L * samples[i - 2] + samples[i - 3];
+                    default -> 4L * samples[i - 1] - 6L * samples[i - 2] + 4L * samples[i - 3] - samples[i - 4];
+                };
+                samples[i] = (int) (samples[i] + prediction);
+            }
+            return samples;
+        }
+
+        private long readUtf8Number() throws IOException {
+            long first = bits(8);
+            if (first < 0x80) {
+                return first;
+            }
+            int ones = Long.numberOfLeadingZeros(~(first << 56));
+            long value = first & (0x7F >> ones);
+            for (int i = 1; i < ones; i++) {
+                long next = bits(8);
+                if ((next & 0xC0) != 0x80) {
+                    throw new IOException("Bad UTF-8 frame number");
+                }
+                value = value << 6 | (next & 0x3F);
+            }
+            return value;
+        }
+
+        private int crc(int from, int to, int width, int polynomial) {
+            int mask = (1 << width) - 1;
+            int crc = 0;
+            for (int i = from; i < to; i++) {
+                crc ^= (data[i] & 0xFF) << (width - 8);
+                for (int k = 0; k < 8; k++) {
+                    crc = (crc & (1 << (width - 1))) != 0 ? (crc << 1 ^ polynomial) & mask : (crc << 1) & mask;
+                }
+            }
+            return crc;
+        }
+
+        private long signedBits(int count) throws IOException {
+            long value = bits(count);
+            return value << (64 - count) >> (64 - count);
+        }
+
+        private long bits(int count) throws IOException {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                if (position >> 3 >= data.length) {
+                    throw new IOException("Unexpected end of FLAC data");
+                }
+                value = value << 1 | (data[(int) (position >> 3)] >> (7 - (position & 7))) & 1;
+                position++;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.insp17.ytms.service.media.mp4;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Mp4FaststartTest {
+
+    private static final long MAX_UINT32 = 0xFFFFFFFFL;
+    private static final int CHUNK_SIZE = 16;
+
+    @Test
+    void remuxMovesMoovFirstAndPatchesChunkOffsets() throws IOException {
+        byte[] ftyp = box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1), new byte[8]);
+        byte[] free = box("free", new byte[12]);
+        byte[] media = new byte[6 * CHUNK_SIZE];
+        for (int i = 0; i < media.length; i++) {
+            media[i] = (byte) (i * 7 + 3);
+        }
+        byte[] mdat = box("mdat", media);
+
+        long mediaStart = ftyp.length + free.length + 8;
+        long[] videoChunks = {mediaStart, mediaStart + 2 * CHUNK_SIZE, mediaStart + 4 * CHUNK_SIZE};
+        long[] audioChunks = {mediaStart + CHUNK_SIZE, mediaStart + 3 * CHUNK_SIZE, mediaStart + 5 * CHUNK_SIZE};
+        byte[] moov = box("moov", box("mvhd", new byte[100]), track(stco(videoChunks)), track(co64(audioChunks)));
+        byte[] original = concat(ftyp, free, mdat, moov);
+
+        Mp4File file = mp4File(original);
+        assertTrue(Mp4Faststart.needsFaststart(file.topLevelBoxes()));
+
+        byte[] remuxed;
+        try (InputStream in = Mp4Faststart.remux(file, file.readMoov(1024))) {
+            remuxed = in.readAllBytes();
+        }
+
+        assertEquals(original.length, remuxed.length);
+        Mp4File result = mp4File(remuxed);
+        List<String> order = result.topLevelBoxes().stream().map(Mp4File.TopLevelBox::type).toList();
+        assertEquals(List.of("ftyp", "moov", "free", "mdat"), order);
+        assertFalse(Mp4Faststart.needsFaststart(result.topLevelBoxes()));
+
+        Mp4Box patched = result.readMoov(1024);
+        List<Mp4Box> stco = patched.findAll("stco");
+        List<Mp4Box> co64 = patched.findAll("co64");
+        assertEquals(1, stco.size());
+        assertEquals(1, co64.size());
+        long[] newVideoChunks = offsets(stco.get(0));
+        long[] newAudioChunks = offsets(co64.get(0));
+        for (int i = 0; i < videoChunks.length; i++) {
+            assertEquals(videoChunks[i] + moov.length, newVideoChunks[i]);
+            assertEquals(audioChunks[i] + moov.length, newAudioChunks[i]);
+            assertArrayEquals(chunk(original, videoChunks[i]), chunk(remuxed, newVideoChunks[i]));
+            assertArrayEquals(chunk(original, audioChunks[i]), chunk(remuxed, newAudioChunks[i]));
+        }
+    }
+
+    @Test
+    void patchChunkOffsetsKeepsStcoWhenOffsetsFit() {
+        Mp4Box moov = Mp4Box.parse(box("moov", track(stco(new long[]{100, MAX_UINT32 - 1000}))));
+        long moovSize = moov.size();
+
+        Mp4Box patched = Mp4Box.parse(Mp4Faststart.patchChunkOffsets(moov, 24, 0x1_0000_0000L, moovSize));
+
+        assertTrue(patched.findAll("co64").isEmpty());
+        assertArrayEquals(new long[]{100 + moovSize, MAX_UINT32 - 1000 + moovSize}, offsets(patched.findAll("stco").get(0)));
+    }
+
+    @Test
+    void patchChunkOffsetsWidensEveryStcoWhenAShiftedOffsetOverflows() {
+        long insertAt = 24;
+        long oldOffset = 0x1_0000_0100L;
+        long[] nearLimit = {insertAt + 8, MAX_UINT32 - 16};
+        long[] small = {insertAt + 40};
+        Mp4Box moov = Mp4Box.parse(box("moov", track(stco(nearLimit)), track(stco(small))));
+        long oldSize = moov.size();
+
+        byte[] serialized = Mp4Faststart.patchChunkOffsets(moov, insertAt, oldOffset, oldSize);
+        Mp4Box patched = Mp4Box.parse(serialized);
+
+        // Each of the three 4-byte entries grows to 8 bytes
+        long newSize = oldSize + 3 * 4;
+        assertEquals(newSize, serialized.length);
+        assertTrue(patched.findAll("stco").isEmpty());
+        List<Mp4Box> co64 = patched.findAll("co64");
+        assertEquals(2, co64.size());
+        assertArrayEquals(new long[]{nearLimit[0] + newSize, nearLimit[1] + newSize}, offsets(co64.get(0)));
+        assertArrayEquals(new long[]{small[0] + newSize}, offsets(co64.get(1)));
+        assertTrue(offsets(co64.get(0))[1] > MAX_UINT32);
+    }
+
+    @Test
+    void patchChunkOffsetsLeavesDataBeforeTheInsertionPointAlone() {
+        long insertAt = 1000;
+        long[] chunks = {500, 2000};
+        Mp4Box moov = Mp4Box.parse(box("moov", track(co64(chunks))));
+        long moovSize = moov.size();
+
+        Mp4Box patched = Mp4Box.parse(Mp4Faststart.patchChunkOffsets(moov, insertAt, 5000, moovSize));
+
+        assertArrayEquals(new long[]{500, 2000 + moovSize}, offsets(patched.findAll("co64").get(0)));
+    }
+
+    private static Mp4File mp4File(byte[] data) {
+        return new Mp4File((offset, length) -> new ByteArrayInputStream(data, (int) offset, (int) length), data.length);
+    }
+
+    private static byte[] track(byte[] chunkOffsets) {
+        byte[] stbl = box("stbl", box("stsd", new byte[16]), chunkOffsets);
+        return box("trak", box("tkhd", new byte[84]), box("mdia", box("minf", stbl)));
+    }
+
+    private static byte[] stco(long[] offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + 4 * offsets.length).putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putInt((int) offset);
+        }
+        return box("stco", payload.array());
+    }
+
+    private static byte[] co64(long[] offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + 8 * offsets.length).putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putLong(offset);
+        }
+        return box("co64", payload.array());
+    }
+
+    private static long[] offsets(Mp4Box table) {
+        ByteBuffer payload = ByteBuffer.wrap(table.getPayload());
+        boolean wide = table.getType().equals("co64");
+        long[] offsets = new long[payload.getInt(4)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = wide ? payload.getLong(8 + 8 * i) : Integer.toUnsignedLong(payload.getInt(8 + 4 * i));
+        }
+        return offsets;
+    }
+
+    private static byte[] chunk(byte[] file, long offset) {
+        return Arrays.copyOfRange(file, (int) offset, (int) offset + CHUNK_SIZE);
+    }
+
+    private static byte[] box(String type, byte[]... contents) {
+        byte[] payload = concat(contents);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
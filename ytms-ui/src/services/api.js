@@ -187,6 +187,22 @@ export const tasksAPI = {
 
     return api.post(`/tasks/generate-upload-url?${params.toString()}`);
   },
+  generateParallelUploadUrls: (filename, type, folder, parts) => {
+    console.log(`Generating ${parts} parallel upload URLs for ${filename} in folder ${folder}`);
+
+    const params = new URLSearchParams({
+      filename: filename,
+      type: type,
+      folder: folder,
+      parts: parts,
+    });
+
+    return api.post(`/tasks/generate-parallel-upload-urls?${params.toString()}`);
+  },
+  finalizeParallelUpload: (finalizeRequest) => {
+    console.log(`Finalizing parallel upload ${finalizeRequest.uploadId}`);
+    return api.post("/tasks/finalize-parallel-upload", finalizeRequest);
+  },
   updateTask: (id, taskData) => api.put(`/tasks/${id}`, taskData),
   deleteTask: (id) => api.delete(`/tasks/${id}`),
   assignEditor: (taskId, editorId) => {
@@ -222,6 +238,10 @@ export const tasksAPI = {
     console.log(`Fetching audio instructions for task ${taskId}`);
     return api.get(`/tasks/${taskId}/audio-instructions`);
   },
+  getTaskMediaUrls: (taskId) => {
+    console.log(`Fetching media URLs for task ${taskId}`);
+    return api.get(`/tasks/${taskId}/media-urls`);
+  },
 
   deleteAudioInstruction: (audioInstructionId) => {
     console.log(`Deleting audio instruction ${audioInstructionId}`);
@@ -348,6 +368,19 @@ export const fileAPI = {
       token
     )}`;
   },
+  // kind is "video" or "audio"; the file is streamed to storage without being spooled on the server
+  ingestUpload: (kind, folder, file, onUploadProgress) => {
+    console.log(`Streaming ${kind} upload ${file.name} into ${folder}`);
+    const formData = new FormData();
+    formData.append("file", file);
+    return api.post(`/files/ingest/${kind}/${folder}`, formData, {
+      headers: { "Content-Type": "multipart/form-data" },
+      timeout: 0,
+      maxContentLength: Infinity,
+      maxBodyLength: Infinity,
+      onUploadProgress,
+    });
+  },
 };
 
 // Dashboard API